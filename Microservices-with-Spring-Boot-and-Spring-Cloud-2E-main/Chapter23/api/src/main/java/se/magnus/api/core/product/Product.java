@@ -5,12 +5,14 @@ public class Product {
   private String name;
   private int weight;
   private String serviceAddress;
+  private boolean stale;
 
   public Product() {
     productId = 0;
     name = null;
     weight = 0;
     serviceAddress = null;
+    stale = false;
   }
 
   public Product(int productId, String name, int weight, String serviceAddress) {
@@ -36,6 +38,13 @@ public class Product {
     return serviceAddress;
   }
 
+  /**
+   * True if the product was served from the composite's fallback cache and may be out of date.
+   */
+  public boolean isStale() {
+    return stale;
+  }
+
   public void setProductId(int productId) {
     this.productId = productId;
   }
@@ -51,4 +60,8 @@ public class Product {
   public void setServiceAddress(String serviceAddress) {
     this.serviceAddress = serviceAddress;
   }
+
+  public void setStale(boolean stale) {
+    this.stale = stale;
+  }
 }
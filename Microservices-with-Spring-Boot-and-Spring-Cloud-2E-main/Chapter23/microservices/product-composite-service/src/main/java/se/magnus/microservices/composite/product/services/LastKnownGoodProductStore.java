@@ -0,0 +1,68 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.magnus.api.core.product.Product;
+
+/**
+ * Keeps the most recently served products, so that the circuit breaker fallback can return real, but possibly
+ * stale, data while the product service is unavailable.
+ */
+@Component
+public class LastKnownGoodProductStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LastKnownGoodProductStore.class);
+
+  private final Map<Integer, Product> products;
+
+  @Autowired
+  public LastKnownGoodProductStore(@Value("${app.product-fallback.max-size:1000}") int maxSize) {
+
+    LOG.info("Creates a last known good product store with max size = {}", maxSize);
+
+    // Access ordered, the least recently served product is evicted first
+    this.products = Collections.synchronizedMap(new LinkedHashMap<Integer, Product>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Product> eldest) {
+        return size() > maxSize;
+      }
+    });
+  }
+
+  public void put(Product product) {
+    products.put(product.getProductId(), copy(product, false));
+  }
+
+  /**
+   * Returns a copy of the last known good product, marked as stale.
+   */
+  public Optional<Product> get(int productId) {
+    Product product = products.get(productId);
+    return product == null ? Optional.empty() : Optional.of(copy(product, true));
+  }
+
+  public void remove(int productId) {
+    products.remove(productId);
+  }
+
+  public List<Integer> getProductIds() {
+    synchronized (products) {
+      return new ArrayList<>(products.keySet());
+    }
+  }
+
+  private Product copy(Product product, boolean stale) {
+    Product copy = new Product(product.getProductId(), product.getName(), product.getWeight(), product.getServiceAddress());
+    copy.setStale(stale);
+    return copy;
+  }
+}
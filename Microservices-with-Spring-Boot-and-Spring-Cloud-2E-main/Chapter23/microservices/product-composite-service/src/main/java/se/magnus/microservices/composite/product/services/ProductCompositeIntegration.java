@@ -1,5 +1,7 @@
 package se.magnus.microservices.composite.product.services;
 
+import static io.github.resilience4j.circuitbreaker.CircuitBreaker.State.CLOSED;
+import static io.github.resilience4j.circuitbreaker.CircuitBreaker.State.HALF_OPEN;
 import static java.util.logging.Level.FINE;
 import static reactor.core.publisher.Flux.empty;
 import static se.magnus.api.event.Event.Type.CREATE;
@@ -7,11 +9,16 @@ import static se.magnus.api.event.Event.Type.DELETE;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,7 +44,6 @@ import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.util.http.HttpErrorInfo;
-import se.magnus.util.http.ServiceUtil;
 
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
@@ -53,7 +59,7 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
   private final ObjectMapper mapper;
   private final StreamBridge streamBridge;
 
-  private final ServiceUtil serviceUtil;
+  private final LastKnownGoodProductStore lastKnownGoodProducts;
 
   @Autowired
   public ProductCompositeIntegration(
@@ -61,14 +67,26 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     WebClient.Builder webClientBuilder,
     ObjectMapper mapper,
     StreamBridge streamBridge,
-    ServiceUtil serviceUtil
+    LastKnownGoodProductStore lastKnownGoodProducts,
+    CircuitBreakerRegistry circuitBreakerRegistry,
+    TimeLimiterRegistry timeLimiterRegistry
   ) {
     this.webClient = webClientBuilder.build();
 
     this.publishEventScheduler = publishEventScheduler;
     this.mapper = mapper;
     this.streamBridge = streamBridge;
-    this.serviceUtil = serviceUtil;
+    this.lastKnownGoodProducts = lastKnownGoodProducts;
+
+    // Refresh the last known good products once the circuit has closed again, before the fallback has to serve them
+    // the next time it opens. Refreshing while half open would use up the calls permitted to decide the state.
+    io.github.resilience4j.circuitbreaker.CircuitBreaker productCircuitBreaker = circuitBreakerRegistry.circuitBreaker("product");
+    io.github.resilience4j.timelimiter.TimeLimiter productTimeLimiter = timeLimiterRegistry.timeLimiter("product");
+    productCircuitBreaker.getEventPublisher().onStateTransition(event -> {
+      if (event.getStateTransition().getFromState() == HALF_OPEN && event.getStateTransition().getToState() == CLOSED) {
+        refreshLastKnownGoodProducts(productTimeLimiter);
+      }
+    });
   }
 
   @Override
@@ -86,6 +104,11 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
   @CircuitBreaker(name = "product", fallbackMethod = "getProductFallbackValue")
   public Mono<Product> getProduct(HttpHeaders headers, int productId, int delay, int faultPercent) {
 
+    return getProductFromService(headers, productId, delay, faultPercent);
+  }
+
+  private Mono<Product> getProductFromService(HttpHeaders headers, int productId, int delay, int faultPercent) {
+
     URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL
       + "/product/{productId}?delay={delay}&faultPercent={faultPercent}").build(productId, delay, faultPercent);
     LOG.debug("Will call the getProduct API on URL: {}", url);
@@ -93,7 +116,8 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     return webClient.get().uri(url)
       .headers(h -> h.addAll(headers))
       .retrieve().bodyToMono(Product.class).log(LOG.getName(), FINE)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .doOnNext(product -> lastKnownGoodProducts.put(product));
   }
 
   private Mono<Product> getProductFallbackValue(HttpHeaders headers, int productId, int delay, int faultPercent, CallNotPermittedException ex) {
@@ -105,13 +129,34 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
       throw new InvalidInputException("Invalid productId: " + productId);
     }
 
-    if (productId == 13) {
+    Optional<Product> lastKnownGood = lastKnownGoodProducts.get(productId);
+    if (!lastKnownGood.isPresent()) {
       String errMsg = "Product Id: " + productId + " not found in fallback cache!";
       LOG.warn(errMsg);
       throw new NotFoundException(errMsg);
     }
 
-    return Mono.just(new Product(productId, "Fallback product" + productId, productId, serviceUtil.getServiceAddress()));
+    LOG.debug("Returns a stale product from the fallback cache for productId = {}", productId);
+    return Mono.just(lastKnownGood.get());
+  }
+
+  private void refreshLastKnownGoodProducts(io.github.resilience4j.timelimiter.TimeLimiter timeLimiter) {
+
+    List<Integer> productIds = lastKnownGoodProducts.getProductIds();
+    LOG.info("Circuit breaker for product is closed again, will refresh {} last known good products", productIds.size());
+
+    // One call at a time, outside of the circuit breaker so that the refresh does not affect its state. The refresh
+    // stops at the first call that fails, leaving the remaining products to be refreshed by ordinary requests
+    Flux.fromIterable(productIds)
+      .concatMap(productId -> getProductFromService(new HttpHeaders(), productId, 0, 0)
+        .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+        .onErrorResume(NotFoundException.class, ex -> {
+          lastKnownGoodProducts.remove(productId);
+          return Mono.empty();
+        }))
+      .subscribe(
+        product -> LOG.trace("Refreshed last known good product for productId = {}", product.getProductId()),
+        ex -> LOG.warn("Refresh of last known good products stopped: {}", ex.toString()));
   }
 
   @Override
@@ -0,0 +1,46 @@
+package se.magnus.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import se.magnus.api.core.product.Product;
+import se.magnus.microservices.composite.product.services.LastKnownGoodProductStore;
+
+class LastKnownGoodProductStoreTests {
+
+  @Test
+  void servedProductIsMarkedAsStale() {
+    LastKnownGoodProductStore store = new LastKnownGoodProductStore(10);
+    Product product = new Product(1, "name", 1, "sa");
+
+    store.put(product);
+
+    Product lastKnownGood = store.get(1).get();
+    assertEquals("name", lastKnownGood.getName());
+    assertTrue(lastKnownGood.isStale());
+    assertFalse(product.isStale());
+  }
+
+  @Test
+  void unknownProductIsNotFound() {
+    LastKnownGoodProductStore store = new LastKnownGoodProductStore(10);
+
+    assertFalse(store.get(13).isPresent());
+  }
+
+  @Test
+  void leastRecentlyServedProductIsEvicted() {
+    LastKnownGoodProductStore store = new LastKnownGoodProductStore(2);
+
+    store.put(new Product(1, "name", 1, "sa"));
+    store.put(new Product(2, "name", 1, "sa"));
+    store.get(1);
+    store.put(new Product(3, "name", 1, "sa"));
+
+    assertTrue(store.get(1).isPresent());
+    assertFalse(store.get(2).isPresent());
+    assertTrue(store.get(3).isPresent());
+  }
+}
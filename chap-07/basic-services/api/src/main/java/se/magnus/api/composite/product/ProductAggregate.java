@@ -1,11 +1,15 @@
 package se.magnus.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 
 import java.util.List;
 
 @Getter
 public class ProductAggregate {
+  public static final String RECOMMENDATIONS_SECTION = "recommendations";
+  public static final String REVIEWS_SECTION = "reviews";
+
   private final int productId;
   private final String name;
   private final int weight;
@@ -13,13 +17,43 @@ public class ProductAggregate {
   private final List<ReviewSummary> reviews;
   private final ServiceAddresses serviceAddresses;
 
+  // Sections that did not arrive in time and are left out, as opposed to sections that are empty
+  private final List<String> incompleteSections;
+
+  // Only set for sections that were asked for a page at a time, the next cursor is null on the last page
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final Long recommendationCount;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final Integer nextRecommendationCursor;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final Long reviewCount;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final Integer nextReviewCursor;
+
+  public ProductAggregate(
+      int productId,
+      String name,
+      int weight,
+      List<RecommendationSummary> recommendations,
+      List<ReviewSummary> reviews,
+      ServiceAddresses serviceAddresses,
+      List<String> incompleteSections) {
+
+    this(productId, name, weight, recommendations, reviews, serviceAddresses, incompleteSections, null, null, null, null);
+  }
+
   public ProductAggregate(
       int productId,
       String name,
       int weight,
       List<RecommendationSummary> recommendations,
       List<ReviewSummary> reviews,
-      ServiceAddresses serviceAddresses) {
+      ServiceAddresses serviceAddresses,
+      List<String> incompleteSections,
+      Long recommendationCount,
+      Integer nextRecommendationCursor,
+      Long reviewCount,
+      Integer nextReviewCursor) {
 
     this.productId = productId;
     this.name = name;
@@ -27,5 +61,10 @@ public class ProductAggregate {
     this.recommendations = recommendations;
     this.reviews = reviews;
     this.serviceAddresses = serviceAddresses;
+    this.incompleteSections = (incompleteSections == null) ? List.of() : incompleteSections;
+    this.recommendationCount = recommendationCount;
+    this.nextRecommendationCursor = nextRecommendationCursor;
+    this.reviewCount = reviewCount;
+    this.nextReviewCursor = nextReviewCursor;
   }
 }
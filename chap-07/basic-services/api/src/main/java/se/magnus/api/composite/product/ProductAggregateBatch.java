@@ -0,0 +1,21 @@
+package se.magnus.api.composite.product;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class ProductAggregateBatch {
+  private final List<ProductAggregate> products;
+  private final List<Integer> notFoundProductIds;
+
+  public ProductAggregateBatch() {
+    products = null;
+    notFoundProductIds = null;
+  }
+
+  public ProductAggregateBatch(List<ProductAggregate> products, List<Integer> notFoundProductIds) {
+    this.products = products;
+    this.notFoundProductIds = notFoundProductIds;
+  }
+}
@@ -0,0 +1,51 @@
+package se.magnus.api.composite.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+/**
+ * One element of a streamed product aggregate, holds either the product header, a recommendation or a review.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductAggregateSection {
+
+  public enum Type {
+    PRODUCT,
+    RECOMMENDATION,
+    REVIEW
+  }
+
+  private final Type type;
+  private final ProductSummary product;
+  private final RecommendationSummary recommendation;
+  private final ReviewSummary review;
+
+  public ProductAggregateSection() {
+    type = null;
+    product = null;
+    recommendation = null;
+    review = null;
+  }
+
+  public ProductAggregateSection(ProductSummary product) {
+    this.type = Type.PRODUCT;
+    this.product = product;
+    this.recommendation = null;
+    this.review = null;
+  }
+
+  public ProductAggregateSection(RecommendationSummary recommendation) {
+    this.type = Type.RECOMMENDATION;
+    this.product = null;
+    this.recommendation = recommendation;
+    this.review = null;
+  }
+
+  public ProductAggregateSection(ReviewSummary review) {
+    this.type = Type.REVIEW;
+    this.product = null;
+    this.recommendation = null;
+    this.review = review;
+  }
+}
@@ -4,10 +4,14 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Tag(name = "ProductComposite", description = "REST API for composite product information.")
 public interface ProductCompositeService {
   @Operation(
@@ -20,7 +24,54 @@ public interface ProductCompositeService {
       @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
   })
   @GetMapping(value = "/product-composite/{productId}", produces = "application/json")
-  Mono<ProductAggregate> getProduct(@PathVariable int productId);
+  Mono<ProductAggregate> getProduct(
+      @PathVariable int productId,
+      @RequestParam(value = "fields", required = false) List<String> fields,
+      @RequestParam(value = "recommendationLimit", required = false) Integer recommendationLimit,
+      @RequestParam(value = "recommendationCursor", required = false) Integer recommendationCursor,
+      @RequestParam(value = "reviewLimit", required = false) Integer reviewLimit,
+      @RequestParam(value = "reviewCursor", required = false) Integer reviewCursor);
+
+  default Mono<ProductAggregate> getProduct(int productId, List<String> fields) {
+    return getProduct(productId, fields, null, null, null, null);
+  }
+
+  @Operation(
+      summary = "${api.product-composite.get-composite-product-pass-through.description}",
+      description = "${api.product-composite.get-composite-product-pass-through.notes}")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+      @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+      @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+      @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @GetMapping(value = "/product-composite/{productId}", params = "passThrough=true", produces = "application/json")
+  Flux<DataBuffer> getProductPassThrough(@PathVariable int productId);
+
+  @Operation(
+      summary = "${api.product-composite.get-composite-product-stream.description}",
+      description = "${api.product-composite.get-composite-product-stream.notes}")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+      @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+      @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+      @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @GetMapping(
+      value = "/product-composite/{productId}/stream",
+      produces = {"application/x-ndjson", "text/event-stream"})
+  Flux<ProductAggregateSection> getProductStream(@PathVariable int productId);
+
+  @Operation(
+      summary = "${api.product-composite.get-composite-products.description}",
+      description = "${api.product-composite.get-composite-products.notes}")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+      @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+      @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @GetMapping(value = "/product-composite", produces = "application/json")
+  Mono<ProductAggregateBatch> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
 
   @Operation(
       summary = "${api.product-composite.create-composite-product.description}",
@@ -0,0 +1,22 @@
+package se.magnus.api.composite.product;
+
+import lombok.Getter;
+
+@Getter
+public class ProductSummary {
+  private final int productId;
+  private final String name;
+  private final int weight;
+
+  public ProductSummary() {
+    productId = 0;
+    name = null;
+    weight = 0;
+  }
+
+  public ProductSummary(int productId, String name, int weight) {
+    this.productId = productId;
+    this.name = name;
+    this.weight = weight;
+  }
+}
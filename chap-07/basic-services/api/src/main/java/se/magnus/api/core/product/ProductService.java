@@ -1,15 +1,39 @@
 package se.magnus.api.core.product;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface ProductService {
 
 
   Mono<Product> createProduct(Product body);
 
-  @GetMapping(value = "/product/{productId}", produces = "application/json")
+  @GetMapping(value = "/product/{productId}", produces = {"application/json", "application/x-jackson-smile"})
   Mono<Product> getProduct(@PathVariable int productId);
 
+  @GetMapping(value = "/product/{productId}", params = "fields", produces = {"application/json", "application/x-jackson-smile"})
+  Mono<Product> getProduct(
+      @PathVariable int productId,
+      @RequestParam(value = "fields", required = true) List<String> fields);
+
+  @GetMapping(value = "/product", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Product> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+  /**
+   * Lists at most limit products in productId order, starting after the productId given as cursor. The next page
+   * starts after the last product of this one. A JSON array is returned unless NDJSON is asked for, it is only
+   * written once the whole page is read. As NDJSON the products are streamed as they are read from the database.
+   */
+  @GetMapping(value = "/product", params = "!productIds", produces = {"application/json", "application/x-ndjson"})
+  Flux<Product> listProducts(
+      @RequestParam(value = "cursor", required = false) Integer cursor,
+      @RequestParam(value = "limit", required = true) int limit,
+      @RequestParam(value = "namePrefix", required = false) String namePrefix,
+      @RequestParam(value = "minWeight", required = false) Integer minWeight,
+      @RequestParam(value = "maxWeight", required = false) Integer maxWeight);
+
   Mono<Void> deleteProduct(int productId);
 }
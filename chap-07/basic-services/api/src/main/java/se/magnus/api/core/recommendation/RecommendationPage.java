@@ -0,0 +1,28 @@
+package se.magnus.api.core.recommendation;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A page of the recommendations of a product, in recommendationId order. The next page starts after the
+ * nextCursor, which is null on the last page.
+ */
+@Getter
+public class RecommendationPage {
+  private final List<Recommendation> recommendations;
+  private final long totalCount;
+  private final Integer nextCursor;
+
+  public RecommendationPage() {
+    recommendations = null;
+    totalCount = 0;
+    nextCursor = null;
+  }
+
+  public RecommendationPage(List<Recommendation> recommendations, long totalCount, Integer nextCursor) {
+    this.recommendations = recommendations;
+    this.totalCount = totalCount;
+    this.nextCursor = nextCursor;
+  }
+}
@@ -10,8 +10,30 @@ public interface RecommendationService {
 
   Mono<Recommendation> createRecommendation(Recommendation body);
 
-  @GetMapping(value = "/recommendation", produces = "application/json")
+  /**
+   * Creates all recommendations of a product at once, used for CREATE_BATCH events.
+   */
+  Flux<Recommendation> createRecommendations(int productId, List<Recommendation> body);
+
+  @GetMapping(value = "/recommendation", produces = {"application/json", "application/x-jackson-smile"})
   Flux<Recommendation> getRecommendations(@RequestParam(value = "productId", required = true) int productId);
 
+  @GetMapping(value = "/recommendation", params = {"productId", "fields", "!limit"}, produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Recommendation> getRecommendations(
+      @RequestParam(value = "productId", required = true) int productId,
+      @RequestParam(value = "fields", required = true) List<String> fields);
+
+  /**
+   * Returns at most limit recommendations, starting after the recommendationId given as cursor.
+   */
+  @GetMapping(value = "/recommendation", params = {"productId", "limit"}, produces = {"application/json", "application/x-jackson-smile"})
+  Mono<RecommendationPage> getRecommendationPage(
+      @RequestParam(value = "productId", required = true) int productId,
+      @RequestParam(value = "limit", required = true) int limit,
+      @RequestParam(value = "cursor", required = false) Integer cursor);
+
+  @GetMapping(value = "/recommendation", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Recommendation> getRecommendationsForProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
   Mono<Void> deleteRecommendations(int productId);
 }
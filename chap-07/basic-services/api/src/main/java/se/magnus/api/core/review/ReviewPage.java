@@ -0,0 +1,28 @@
+package se.magnus.api.core.review;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A page of the reviews of a product, in reviewId order. The next page starts after the nextCursor, which is null
+ * on the last page.
+ */
+@Getter
+public class ReviewPage {
+  private final List<Review> reviews;
+  private final long totalCount;
+  private final Integer nextCursor;
+
+  public ReviewPage() {
+    reviews = null;
+    totalCount = 0;
+    nextCursor = null;
+  }
+
+  public ReviewPage(List<Review> reviews, long totalCount, Integer nextCursor) {
+    this.reviews = reviews;
+    this.totalCount = totalCount;
+    this.nextCursor = nextCursor;
+  }
+}
@@ -10,8 +10,30 @@ public interface ReviewService {
 
   Mono<Review> createReview(Review body);
 
-  @GetMapping(value = "/review", produces = "application/json")
+  /**
+   * Creates all reviews of a product at once, used for CREATE_BATCH events.
+   */
+  Flux<Review> createReviews(int productId, List<Review> body);
+
+  @GetMapping(value = "/review", produces = {"application/json", "application/x-jackson-smile"})
   Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
 
+  @GetMapping(value = "/review", params = {"productId", "fields", "!limit"}, produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Review> getReviews(
+      @RequestParam(value = "productId", required = true) int productId,
+      @RequestParam(value = "fields", required = true) List<String> fields);
+
+  /**
+   * Returns at most limit reviews, starting after the reviewId given as cursor.
+   */
+  @GetMapping(value = "/review", params = {"productId", "limit"}, produces = {"application/json", "application/x-jackson-smile"})
+  Mono<ReviewPage> getReviewPage(
+      @RequestParam(value = "productId", required = true) int productId,
+      @RequestParam(value = "limit", required = true) int limit,
+      @RequestParam(value = "cursor", required = false) Integer cursor);
+
+  @GetMapping(value = "/review", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Review> getReviewsForProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
   Mono<Void> deleteReviews(int productId);
 }
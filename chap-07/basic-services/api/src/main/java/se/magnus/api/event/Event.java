@@ -1,36 +1,54 @@
 package se.magnus.api.event;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 public class Event<K, T> {
 
   public enum Type {
     CREATE,
+    // Creates all items in the batch, e.g. all recommendations of a product, in one message
+    CREATE_BATCH,
     DELETE
   }
 
   private final Type eventType;
   private final K key;
   private final T data;
+  private final List<T> batch;
   private final ZonedDateTime eventCreatedAt;
 
   public Event() {
     this.eventType = null;
     this.key = null;
     this.data = null;
+    this.batch = null;
     this.eventCreatedAt = null;
   }
 
   public Event(Type eventType, K key, T data) {
+    this(eventType, key, data, null);
+  }
+
+  private Event(Type eventType, K key, T data, List<T> batch) {
     this.eventType = eventType;
     this.key = key;
     this.data = data;
+    this.batch = batch;
     this.eventCreatedAt = ZonedDateTime.now();
   }
 
+  /**
+   * A CREATE_BATCH event, all items are expected to belong to the key.
+   */
+  public static <K, T> Event<K, T> batch(K key, List<T> batch) {
+    return new Event<>(Type.CREATE_BATCH, key, null, batch);
+  }
+
   public Type getEventType() {
     return this.eventType;
   }
@@ -43,6 +61,11 @@ public class Event<K, T> {
     return this.data;
   }
 
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public List<T> getBatch() {
+    return this.batch;
+  }
+
   @JsonSerialize(using = ZonedDateTimeSerializer.class)
   public ZonedDateTime getEventCreatedAt() {
     return this.eventCreatedAt;
@@ -16,9 +16,10 @@ import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.web.client.RestTemplate;
-import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
+import se.magnus.microservices.composite.product.services.EventPublisher;
 import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
 
 import java.util.LinkedHashMap;
@@ -61,22 +62,12 @@ public class ProductCompositeServiceApplication {
 						.url(apiExternalDocUrl));
 	}
 
-	private final Integer threadPoolSize;
-	private final Integer taskQueueSize;
-
-	@Autowired
-	public ProductCompositeServiceApplication(
-			@Value("${app.threadPoolSize:10}") Integer threadPoolSize,
-			@Value("${app.taskQueueSize:100}") Integer taskQueueSize
-	) {
-		this.threadPoolSize = threadPoolSize;
-		this.taskQueueSize = taskQueueSize;
-	}
-
-	@Bean
-	public Scheduler publishEventScheduler() {
-		LOG.info("Creates a messagingScheduler with connectionPoolSize = {}", threadPoolSize);
-		return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "publish-pool");
+	/**
+	 * Receives the headers of every event acked by Kafka, see EventPublisher.
+	 */
+	@Bean(EventPublisher.RECORD_METADATA_CHANNEL)
+	public SubscribableChannel publishRecordMetadata() {
+		return new DirectChannel();
 	}
 
 	@Autowired
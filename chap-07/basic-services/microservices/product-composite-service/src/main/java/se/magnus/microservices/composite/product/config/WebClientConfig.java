@@ -0,0 +1,127 @@
+package se.magnus.microservices.composite.product.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import se.magnus.util.http.DeadlineExchangeFilterFunction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One WebClient per core service, each with its own connection pool.
+ *
+ * With HTTP/2 enabled the clients upgrade to h2c, multiplexing concurrent calls over a few connections, and fall
+ * back to HTTP/1.1 for services that do not support it. Pool gauges are exported via Micrometer as
+ * reactor.netty.connection.provider.*, tagged with the name of the pool. The deadline of the incoming request is
+ * forwarded on every call.
+ */
+@Configuration
+public class WebClientConfig implements DisposableBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebClientConfig.class);
+
+  public static final String SMILE_MEDIA_TYPE = "application/x-jackson-smile";
+
+  private final boolean http2Enabled;
+  private final boolean smileEnabled;
+  private final DeadlineExchangeFilterFunction deadlineFilter;
+  private final List<ConnectionProvider> connectionProviders = new ArrayList<>();
+
+  public WebClientConfig(
+      @Value("${app.http2.enabled:true}") boolean http2Enabled,
+      @Value("${app.smile.enabled:true}") boolean smileEnabled,
+      DeadlineExchangeFilterFunction deadlineFilter) {
+
+    this.http2Enabled = http2Enabled;
+    this.smileEnabled = smileEnabled;
+    this.deadlineFilter = deadlineFilter;
+  }
+
+  @Bean
+  public WebClient productWebClient(
+      WebClient.Builder builder,
+      @Value("${app.product-service.pool.max-connections:100}") int maxConnections,
+      @Value("${app.product-service.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+      @Value("${app.product-service.pool.max-idle-time:30s}") Duration maxIdleTime,
+      @Value("${app.product-service.pool.evict-in-background:30s}") Duration evictInBackground) {
+
+    return createWebClient("product", builder, maxConnections, pendingAcquireMaxCount, maxIdleTime, evictInBackground);
+  }
+
+  @Bean
+  public WebClient recommendationWebClient(
+      WebClient.Builder builder,
+      @Value("${app.recommendation-service.pool.max-connections:100}") int maxConnections,
+      @Value("${app.recommendation-service.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+      @Value("${app.recommendation-service.pool.max-idle-time:30s}") Duration maxIdleTime,
+      @Value("${app.recommendation-service.pool.evict-in-background:30s}") Duration evictInBackground) {
+
+    return createWebClient("recommendation", builder, maxConnections, pendingAcquireMaxCount, maxIdleTime, evictInBackground);
+  }
+
+  @Bean
+  public WebClient reviewWebClient(
+      WebClient.Builder builder,
+      @Value("${app.review-service.pool.max-connections:100}") int maxConnections,
+      @Value("${app.review-service.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+      @Value("${app.review-service.pool.max-idle-time:30s}") Duration maxIdleTime,
+      @Value("${app.review-service.pool.evict-in-background:30s}") Duration evictInBackground) {
+
+    return createWebClient("review", builder, maxConnections, pendingAcquireMaxCount, maxIdleTime, evictInBackground);
+  }
+
+  private WebClient createWebClient(
+      String serviceName,
+      WebClient.Builder builder,
+      int maxConnections,
+      int pendingAcquireMaxCount,
+      Duration maxIdleTime,
+      Duration evictInBackground) {
+
+    LOG.info("Creates a WebClient for the {} service, http2: {}, smile: {}, max connections: {}, pending acquire max count: {}, max idle time: {}",
+        serviceName, this.http2Enabled, this.smileEnabled, maxConnections, pendingAcquireMaxCount, maxIdleTime);
+
+    ConnectionProvider connectionProvider = ConnectionProvider.builder(serviceName)
+        .maxConnections(maxConnections)
+        .pendingAcquireMaxCount(pendingAcquireMaxCount)
+        .maxIdleTime(maxIdleTime)
+        .evictInBackground(evictInBackground)
+        .metrics(true)
+        .build();
+    this.connectionProviders.add(connectionProvider);
+
+    HttpClient httpClient = HttpClient.create(connectionProvider);
+    if (this.http2Enabled) {
+      httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+    }
+
+    // Cloned so that the clients do not share the connector with each other or with other users of the builder
+    WebClient.Builder clientBuilder = builder.clone()
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .filter(this.deadlineFilter);
+
+    // Smile is a binary encoding of the same data model as JSON, cheaper to parse and smaller on the wire.
+    // Services that only produce JSON still match the second media type.
+    if (this.smileEnabled) {
+      clientBuilder.defaultHeader(HttpHeaders.ACCEPT, SMILE_MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE);
+    }
+    return clientBuilder.build();
+  }
+
+  @Override
+  public void destroy() {
+    this.connectionProviders.forEach(ConnectionProvider::dispose);
+  }
+}
@@ -0,0 +1,142 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent calls to a downstream service, calls over the limit are rejected at once.
+ *
+ * The limit is adjusted AIMD style from the observed latency: it grows by one when a call completes in time while
+ * the limit is in use, and shrinks by 10% when a call is much slower than the long term average latency or fails
+ * with anything but a client error.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+  private static final int MIN_LIMIT = 1;
+  private static final double BACKOFF_RATIO = 0.9;
+
+  // Weight of each call in the long term average latency, low enough for a slowdown to show as a deviation from it
+  private static final double AVERAGE_WEIGHT = 0.05;
+
+  private final String serviceName;
+  private final boolean enabled;
+  private final int maxLimit;
+  private final double latencyTolerance;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Counter rejected;
+
+  private volatile double limit;
+  private double averageLatencyNanos;
+
+  public AdaptiveConcurrencyLimiter(
+      String serviceName,
+      boolean enabled,
+      int initialLimit,
+      int maxLimit,
+      double latencyTolerance,
+      MeterRegistry meterRegistry) {
+
+    this.serviceName = serviceName;
+    this.enabled = enabled;
+    this.limit = initialLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+
+    Gauge.builder("composite.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+        .description("Current limit of concurrent calls to the service")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+    Gauge.builder("composite.concurrency.inflight", this.inFlight, AtomicInteger::get)
+        .description("Number of calls to the service in progress")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+    this.rejected = Counter.builder("composite.concurrency.rejected")
+        .description("Number of calls rejected because the concurrency limit was reached")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+
+    LOG.info("Concurrency limit for {}, enabled: {}, initial limit: {}, max limit: {}, latency tolerance: {}",
+        serviceName, enabled, initialLimit, maxLimit, latencyTolerance);
+  }
+
+  public <T> Mono<T> limit(Supplier<Mono<T>> call) {
+    return limitMany(() -> call.get().flux()).singleOrEmpty();
+  }
+
+  public <T> Flux<T> limitMany(Supplier<Flux<T>> call) {
+    if (!this.enabled) {
+      return call.get();
+    }
+
+    return Flux.defer(() -> {
+      if (!tryAcquire()) {
+        this.rejected.increment();
+        LOG.debug("Concurrency limit {} reached for {}, rejects the call", (int) this.limit, this.serviceName);
+        return Flux.error(new ServiceUnavailableException("Too many concurrent calls to the " + this.serviceName + " service"));
+      }
+
+      long start = System.nanoTime();
+      return call.get()
+          .doOnComplete(() -> onSample(System.nanoTime() - start, false))
+          .doOnError(ex -> onSample(System.nanoTime() - start, isOverload(ex)))
+          .doFinally(signal -> this.inFlight.decrementAndGet());
+    });
+  }
+
+  public double getLimit() {
+    return this.limit;
+  }
+
+  public int getInFlight() {
+    return this.inFlight.get();
+  }
+
+  private boolean tryAcquire() {
+    while (true) {
+      int current = this.inFlight.get();
+      if (current >= (int) this.limit) {
+        return false;
+      }
+      if (this.inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private synchronized void onSample(long latencyNanos, boolean overload) {
+    boolean slow = this.averageLatencyNanos > 0 && latencyNanos > this.averageLatencyNanos * this.latencyTolerance;
+    this.averageLatencyNanos = (this.averageLatencyNanos == 0)
+        ? latencyNanos
+        : this.averageLatencyNanos + (latencyNanos - this.averageLatencyNanos) * AVERAGE_WEIGHT;
+
+    if (overload || slow) {
+      this.limit = Math.max(MIN_LIMIT, this.limit * BACKOFF_RATIO);
+
+    } else if (this.inFlight.get() * 2 >= this.limit) {
+      // Only grow while the limit is actually in use, an idle service says nothing about how much it can take
+      this.limit = Math.min(this.maxLimit, this.limit + 1);
+    }
+  }
+
+  private boolean isOverload(Throwable ex) {
+    if (ex instanceof WebClientResponseException) {
+      return !((WebClientResponseException) ex).getStatusCode().is4xxClientError();
+    }
+    return !(ex instanceof NotFoundException || ex instanceof InvalidInputException);
+  }
+}
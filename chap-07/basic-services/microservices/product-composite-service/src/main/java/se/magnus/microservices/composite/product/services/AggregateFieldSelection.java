@@ -0,0 +1,150 @@
+package se.magnus.microservices.composite.product.services;
+
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.exceptions.InvalidInputException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The parts of a product aggregate asked for with the fields parameter, e.g. {@code name,weight,reviews.subject}.
+ *
+ * A list is only fetched when it, or one of its fields, is selected. Selecting a list without naming any of its
+ * fields selects all of them.
+ */
+class AggregateFieldSelection {
+
+  private static final Set<String> PRODUCT_FIELDS = Set.of("name", "weight");
+  private static final Set<String> RECOMMENDATION_FIELDS = Set.of("author", "rate", "content");
+  private static final Set<String> REVIEW_FIELDS = Set.of("author", "subject", "content");
+
+  private static final String RECOMMENDATIONS = "recommendations";
+  private static final String REVIEWS = "reviews";
+  private static final String SERVICE_ADDRESSES = "serviceAddresses";
+
+  private final List<String> productFields = new ArrayList<>(List.of("productId"));
+  private List<String> recommendationFields;
+  private List<String> reviewFields;
+  private boolean serviceAddresses;
+
+  static AggregateFieldSelection parse(List<String> fields) {
+    AggregateFieldSelection selection = new AggregateFieldSelection();
+    fields.stream().map(String::trim).filter(field -> !field.isEmpty()).distinct().forEach(selection::add);
+    return selection;
+  }
+
+  private void add(String field) {
+    if (field.equals("productId")) {
+      return;
+    }
+    if (PRODUCT_FIELDS.contains(field)) {
+      this.productFields.add(field);
+    } else if (field.equals(SERVICE_ADDRESSES)) {
+      this.serviceAddresses = true;
+    } else if (field.equals(RECOMMENDATIONS) || field.startsWith(RECOMMENDATIONS + ".")) {
+      this.recommendationFields = addListField(this.recommendationFields, field, RECOMMENDATIONS, RECOMMENDATION_FIELDS);
+    } else if (field.equals(REVIEWS) || field.startsWith(REVIEWS + ".")) {
+      this.reviewFields = addListField(this.reviewFields, field, REVIEWS, REVIEW_FIELDS);
+    } else {
+      throw new InvalidInputException("Invalid field: " + field);
+    }
+  }
+
+  private static List<String> addListField(List<String> selected, String field, String list, Set<String> validFields) {
+    if (field.equals(list)) {
+      return List.of();
+    }
+
+    String subField = field.substring(list.length() + 1);
+    if (!validFields.contains(subField)) {
+      throw new InvalidInputException("Invalid field: " + field);
+    }
+
+    // An empty list means that all fields already are selected
+    if (selected != null && selected.isEmpty()) {
+      return selected;
+    }
+    List<String> result = (selected == null) ? new ArrayList<>() : selected;
+    result.add(subField);
+    return result;
+  }
+
+  /**
+   * Fields to ask the product service for, always includes the productId.
+   */
+  List<String> getProductFields() {
+    return this.productFields;
+  }
+
+  boolean includesRecommendations() {
+    return this.recommendationFields != null;
+  }
+
+  /**
+   * Fields to ask the recommendation service for, an empty list means all fields.
+   */
+  List<String> getRecommendationFields() {
+    return this.recommendationFields;
+  }
+
+  boolean includesReviews() {
+    return this.reviewFields != null;
+  }
+
+  /**
+   * Fields to ask the review service for, an empty list means all fields.
+   */
+  List<String> getReviewFields() {
+    return this.reviewFields;
+  }
+
+  /**
+   * Removes everything that is not selected from a complete aggregate.
+   */
+  ProductAggregate apply(ProductAggregate aggregate) {
+    List<RecommendationSummary> recommendations = null;
+    if (includesRecommendations() && aggregate.getRecommendations() != null) {
+      recommendations = aggregate.getRecommendations().stream()
+          .map(r -> new RecommendationSummary(
+              r.getRecommendationId(),
+              selected(this.recommendationFields, "author") ? r.getAuthor() : null,
+              selected(this.recommendationFields, "rate") ? r.getRate() : 0,
+              selected(this.recommendationFields, "content") ? r.getContent() : null))
+          .collect(Collectors.toList());
+    }
+
+    List<ReviewSummary> reviews = null;
+    if (includesReviews() && aggregate.getReviews() != null) {
+      reviews = aggregate.getReviews().stream()
+          .map(r -> new ReviewSummary(
+              r.getReviewId(),
+              selected(this.reviewFields, "author") ? r.getAuthor() : null,
+              selected(this.reviewFields, "subject") ? r.getSubject() : null,
+              selected(this.reviewFields, "content") ? r.getContent() : null))
+          .collect(Collectors.toList());
+    }
+
+    return new ProductAggregate(
+        aggregate.getProductId(),
+        this.productFields.contains("name") ? aggregate.getName() : null,
+        this.productFields.contains("weight") ? aggregate.getWeight() : 0,
+        recommendations,
+        reviews,
+        this.serviceAddresses ? aggregate.getServiceAddresses() : null,
+        aggregate.getIncompleteSections().stream()
+            .filter(section -> section.equals(ProductAggregate.RECOMMENDATIONS_SECTION) ? includesRecommendations() : includesReviews())
+            .collect(Collectors.toList()),
+        includesRecommendations() ? aggregate.getRecommendationCount() : null,
+        includesRecommendations() ? aggregate.getNextRecommendationCursor() : null,
+        includesReviews() ? aggregate.getReviewCount() : null,
+        includesReviews() ? aggregate.getNextReviewCursor() : null);
+  }
+
+  private static boolean selected(List<String> fields, String field) {
+    return fields.isEmpty() || fields.contains(field);
+  }
+}
@@ -0,0 +1,188 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import se.magnus.api.event.Event;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Appends outgoing events to a local OutboxJournal and relays them to the broker in the background, so that creates
+ * and deletes neither wait for nor fail with a slow or unavailable broker.
+ *
+ * The relay publishes the events in journal order, batch by batch, and acknowledges a batch in the journal once the
+ * broker has acknowledged all its events. After a failure or a restart it resumes from the last acknowledged batch,
+ * events of a batch that was only partly acknowledged are published again.
+ */
+@Component
+public class EventOutbox {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventOutbox.class);
+
+  private final EventPublisher publisher;
+  private final ObjectMapper mapper;
+  private final boolean enabled;
+  private final int batchSize;
+  private final Duration retryInterval;
+  private final Counter relayFailures;
+
+  private final Sinks.Many<Boolean> appended = Sinks.many().unicast().onBackpressureBuffer();
+  private final OutboxJournal journal;
+  private final Disposable relay;
+
+  @Autowired
+  public EventOutbox(
+      EventPublisher publisher,
+      ObjectMapper mapper,
+      MeterRegistry meterRegistry,
+      @Value("${app.outbox.enabled:false}") boolean enabled,
+      @Value("${app.outbox.directory:outbox}") Path directory,
+      @Value("${app.outbox.segment-size:64MB}") DataSize segmentSize,
+      @Value("${app.outbox.max-segments:16}") int maxSegments,
+      @Value("${app.outbox.force:false}") boolean force,
+      @Value("${app.outbox.batch-size:100}") int batchSize,
+      @Value("${app.outbox.retry-interval:1s}") Duration retryInterval) throws IOException {
+
+    this.publisher = publisher;
+    this.mapper = mapper;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.retryInterval = retryInterval;
+    this.relayFailures = meterRegistry.counter("composite.outbox.relay.failures");
+
+    if (!enabled) {
+      LOG.info("The outbox is disabled, events are published directly");
+      this.journal = null;
+      this.relay = null;
+      return;
+    }
+
+    this.journal = new OutboxJournal(directory, (int) segmentSize.toBytes(), maxSegments, force);
+    Gauge.builder("composite.outbox.backlog.bytes", this.journal, OutboxJournal::getBacklog)
+        .description("Bytes of events in the outbox journal not yet acknowledged by the broker")
+        .register(meterRegistry);
+
+    // Every append wakes up the relay, the interval retries after failures and relays what was left before a restart
+    this.relay = Flux.merge(this.appended.asFlux(), Flux.interval(Duration.ZERO, retryInterval).map(tick -> true))
+        .onBackpressureLatest()
+        .concatMap(signal -> relayBacklog(), 1)
+        .subscribe();
+  }
+
+  /**
+   * Completes when the event is in the journal, or when the broker has acknowledged it if the outbox is disabled.
+   */
+  public Mono<Void> publish(String bindingName, Event<?, ?> event) {
+    if (!this.enabled) {
+      return this.publisher.publish(bindingName, event);
+    }
+
+    // The append writes to the journal, and forces it to disk if configured to, which must not block the event loop
+    return Mono.<Void>fromRunnable(() -> {
+          try {
+            this.journal.append(encode(bindingName, event));
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+          this.appended.emitNext(true, EventPublisher.RETRY_NON_SERIALIZED);
+        })
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (this.enabled) {
+      this.relay.dispose();
+      this.journal.close();
+    }
+  }
+
+  private Mono<Void> relayBacklog() {
+    return Mono.defer(this::relayBatch)
+        .repeat()
+        .takeUntil(relayed -> relayed == 0)
+        .then()
+        .onErrorResume(ex -> {
+          LOG.warn("Failed to relay events from the outbox, retries within {}: {}", this.retryInterval, ex.toString());
+          this.relayFailures.increment();
+          return Mono.empty();
+        });
+  }
+
+  private Mono<Integer> relayBatch() {
+    List<OutboxJournal.Record> records = this.journal.read(this.journal.getAcknowledgedOffset(), this.batchSize);
+    if (records.isEmpty()) {
+      return Mono.just(0);
+    }
+
+    return Flux.fromIterable(records)
+        .flatMapSequential(record -> {
+          OutgoingEvent event = decode(record.getBody());
+          return this.publisher.publish(event.bindingName, event.partitionKey, event.payload).thenReturn(record);
+        }, this.batchSize)
+        .last()
+        .map(last -> {
+          this.journal.acknowledge(last.getNextOffset());
+          return records.size();
+        });
+  }
+
+  /**
+   * The binding, the partition key as JSON and the event as JSON, which is published as is.
+   */
+  private byte[] encode(String bindingName, Event<?, ?> event) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(bindingName);
+    byte[] key = this.mapper.writeValueAsBytes(event.getKey());
+    out.writeInt(key.length);
+    out.write(key);
+    out.write(this.mapper.writeValueAsBytes(event));
+    return bytes.toByteArray();
+  }
+
+  private OutgoingEvent decode(byte[] body) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+      String bindingName = in.readUTF();
+      byte[] key = in.readNBytes(in.readInt());
+      return new OutgoingEvent(bindingName, this.mapper.readValue(key, Object.class), in.readAllBytes());
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static class OutgoingEvent {
+    private final String bindingName;
+    private final Object partitionKey;
+    private final byte[] payload;
+
+    OutgoingEvent(String bindingName, Object partitionKey, byte[] payload) {
+      this.bindingName = bindingName;
+      this.partitionKey = partitionKey;
+      this.payload = payload;
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Publishes events and completes once the broker has acknowledged them, RabbitMQ through publisher confirms and
+ * Kafka through the record metadata of acked sends.
+ *
+ * Events are queued and sent in order by one publisher thread, with at most max-in-flight of them unacknowledged.
+ * Sends within the window are pipelined, the broker confirms them in batches. A burst waits in the queue rather
+ * than being rejected, its callers complete as the acks arrive. Up to max-queued events wait, beyond that publish
+ * fails at once with a ServiceUnavailableException.
+ */
+@Component
+public class EventPublisher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventPublisher.class);
+
+  public static final String RECORD_METADATA_CHANNEL = "publishRecordMetadata";
+  static final String CORRELATION_HEADER = "publishCorrelationId";
+
+  // Concurrent publishers may collide when they emit, they retry rather than fail
+  static final Sinks.EmitFailureHandler RETRY_NON_SERIALIZED =
+      (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED;
+
+  private final BiConsumer<String, Message<?>> sender;
+  private final MeterRegistry meterRegistry;
+  private final boolean awaitConfirms;
+  private final Duration confirmTimeout;
+  private final int maxQueued;
+
+  private final Sinks.Many<Publication> queue;
+  private final Scheduler publisherScheduler = Schedulers.newSingle("event-publisher");
+  private final ConcurrentMap<String, Publication> awaitingRecordMetadata = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  @Autowired
+  public EventPublisher(
+      StreamBridge streamBridge,
+      MeterRegistry meterRegistry,
+      @Qualifier(RECORD_METADATA_CHANNEL) SubscribableChannel recordMetadataChannel,
+      @Value("${app.event-publisher.await-confirms:true}") boolean awaitConfirms,
+      @Value("${app.event-publisher.max-in-flight:256}") int maxInFlight,
+      @Value("${app.event-publisher.confirm-timeout:10s}") Duration confirmTimeout,
+      @Value("${app.event-publisher.max-queued:10000}") int maxQueued) {
+
+    this(streamBridge::send, meterRegistry, recordMetadataChannel, awaitConfirms, maxInFlight, confirmTimeout, maxQueued);
+  }
+
+  public EventPublisher(
+      BiConsumer<String, Message<?>> sender,
+      MeterRegistry meterRegistry,
+      SubscribableChannel recordMetadataChannel,
+      boolean awaitConfirms,
+      int maxInFlight,
+      Duration confirmTimeout,
+      int maxQueued) {
+
+    this.sender = sender;
+    this.meterRegistry = meterRegistry;
+    this.awaitConfirms = awaitConfirms;
+    this.confirmTimeout = confirmTimeout;
+    this.maxQueued = maxQueued;
+    this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<Publication>get(maxQueued).get());
+
+    Gauge.builder("composite.event.publish.in.flight", this.inFlight, AtomicInteger::get)
+        .description("Number of events sent to the broker and not yet acknowledged")
+        .register(meterRegistry);
+
+    // The Kafka binder sends the headers of every acked record, with its metadata, to this channel
+    recordMetadataChannel.subscribe(message -> {
+      String correlationId = message.getHeaders().get(CORRELATION_HEADER, String.class);
+      Publication publication = (correlationId == null) ? null : this.awaitingRecordMetadata.get(correlationId);
+      if (publication != null) {
+        publication.complete("ack", null);
+      }
+    });
+
+    // flatMap only asks for another event when one in the window has been acknowledged, publishOn takes them one by
+    // one so that the waiting events stay in the bounded queue
+    this.queue.asFlux()
+        .publishOn(this.publisherScheduler, 1)
+        .flatMap(this::send, maxInFlight)
+        .subscribe();
+
+    LOG.info("Created the event publisher, await confirms: {}, max in flight: {}, confirm timeout: {}, max queued: {}",
+        awaitConfirms, maxInFlight, confirmTimeout, maxQueued);
+  }
+
+  /**
+   * Completes when the broker has acknowledged the event, or with a ServiceUnavailableException if it does not
+   * within the confirm timeout or if the queue is full.
+   */
+  public Mono<Void> publish(String bindingName, Event<?, ?> event) {
+    return publish(bindingName, event.getKey(), event);
+  }
+
+  /**
+   * Publishes an event that is already serialized, or any other payload, partitioned by the key.
+   */
+  public Mono<Void> publish(String bindingName, Object partitionKey, Object payload) {
+    return Mono.defer(() -> {
+      Publication publication = new Publication(bindingName, partitionKey, payload);
+      Sinks.EmitResult queued;
+      do {
+        queued = this.queue.tryEmitNext(publication);
+      } while (queued == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+      if (queued == Sinks.EmitResult.FAIL_OVERFLOW) {
+        return Mono.error(new ServiceUnavailableException("Event publisher queue is full, " + this.maxQueued + " events are waiting"));
+      }
+      if (queued.isFailure()) {
+        return Mono.error(new ServiceUnavailableException("Event publisher is not accepting events: " + queued));
+      }
+      return publication.result.asMono();
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    this.queue.emitComplete(RETRY_NON_SERIALIZED);
+    this.publisherScheduler.dispose();
+  }
+
+  private Mono<Void> send(Publication publication) {
+    this.inFlight.incrementAndGet();
+    publication.sentAt = System.nanoTime();
+
+    CorrelationData correlation = new CorrelationData(publication.correlationId);
+    MessageBuilder<?> builder = MessageBuilder.withPayload(publication.payload);
+    if (publication.payload instanceof byte[]) {
+      builder.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON);
+    }
+    Message<?> message = builder
+        .setHeader("partitionKey", publication.partitionKey)
+        .setHeader(CORRELATION_HEADER, publication.correlationId)
+        .setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlation)
+        .build();
+
+    if (this.awaitConfirms) {
+      this.awaitingRecordMetadata.put(publication.correlationId, publication);
+      correlation.getFuture().addCallback(
+          confirm -> {
+            if (confirm.isAck()) {
+              publication.complete("ack", null);
+            } else {
+              publication.complete("nack", new ServiceUnavailableException("Event rejected by the broker: " + confirm.getReason()));
+            }
+          },
+          failure -> publication.complete("error", failure));
+    }
+
+    try {
+      this.sender.accept(publication.bindingName, message);
+      if (!this.awaitConfirms) {
+        publication.complete("sent", null);
+      }
+    } catch (RuntimeException ex) {
+      LOG.warn("Failed to send event to {}: {}", publication.bindingName, ex.toString());
+      publication.complete("error", ex);
+    }
+
+    return publication.result.asMono()
+        .timeout(this.confirmTimeout, Mono.fromRunnable(() -> publication.complete("timeout",
+            new ServiceUnavailableException("Event not acknowledged by the broker within " + this.confirmTimeout))))
+        .onErrorResume(ex -> Mono.empty());
+  }
+
+  private class Publication {
+    private final String bindingName;
+    private final Object partitionKey;
+    private final Object payload;
+    private final String correlationId = UUID.randomUUID().toString();
+    private final Sinks.One<Void> result = Sinks.one();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private long sentAt;
+
+    Publication(String bindingName, Object partitionKey, Object payload) {
+      this.bindingName = bindingName;
+      this.partitionKey = partitionKey;
+      this.payload = payload;
+    }
+
+    /**
+     * Only the first outcome counts, a late ack after a timeout is ignored.
+     */
+    void complete(String outcome, Throwable error) {
+      if (!this.completed.compareAndSet(false, true)) {
+        return;
+      }
+
+      // Accounted for before the caller is completed, so that it sees the metrics of its own event
+      awaitingRecordMetadata.remove(this.correlationId);
+      inFlight.decrementAndGet();
+      Timer.builder("composite.event.publish")
+          .description("Time from sending an event to its acknowledgement by the broker")
+          .tag("binding", this.bindingName)
+          .tag("outcome", outcome)
+          .register(meterRegistry)
+          .record(System.nanoTime() - this.sentAt, TimeUnit.NANOSECONDS);
+
+      if (error == null) {
+        this.result.emitEmpty(RETRY_NON_SERIALIZED);
+      } else {
+        this.result.emitError(error, RETRY_NON_SERIALIZED);
+      }
+    }
+  }
+}
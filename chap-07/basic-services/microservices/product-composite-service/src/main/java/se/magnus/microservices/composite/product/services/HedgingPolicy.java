@@ -0,0 +1,102 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Sends a duplicate of a call that has not completed within a delay, the first of the two to complete wins and
+ * the other one is cancelled.
+ *
+ * Hedges are limited by a budget: every call adds a fraction of a token to a bucket and every hedge takes a
+ * whole token, so with a budget of 10% at most one call in ten is duplicated over time.
+ */
+public class HedgingPolicy {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HedgingPolicy.class);
+
+  // Caps the number of hedges that can be fired in a burst after a quiet period
+  private static final double MAX_TOKENS = 10.0;
+
+  private final String serviceName;
+  private final boolean enabled;
+  private final Duration delay;
+  private final double tokensPerCall;
+  private final Counter hedgesFired;
+  private final Counter hedgesWon;
+
+  private double tokens;
+
+  public HedgingPolicy(String serviceName, boolean enabled, Duration delay, int maxExtraLoadPercent, MeterRegistry meterRegistry) {
+    this.serviceName = serviceName;
+    this.enabled = enabled;
+    this.delay = delay;
+    this.tokensPerCall = maxExtraLoadPercent / 100.0;
+
+    this.hedgesFired = Counter.builder("composite.hedge.fired")
+        .description("Number of duplicate calls sent because the first call was slow")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+    this.hedgesWon = Counter.builder("composite.hedge.won")
+        .description("Number of duplicate calls that completed before the first call")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+
+    LOG.info("Hedging for {}, enabled: {}, delay: {}, max extra load: {}%", serviceName, enabled, delay, maxExtraLoadPercent);
+  }
+
+  /**
+   * Runs the call, and a duplicate of it if it is slow. The elements are collected before they are emitted so
+   * that the winner can be picked on completion.
+   */
+  public <T> Flux<T> hedge(Supplier<Flux<T>> call) {
+    if (!this.enabled) {
+      return call.get();
+    }
+
+    return Mono.defer(() -> {
+      deposit();
+
+      Mono<List<T>> primary = call.get().collectList();
+      Mono<List<T>> hedge = Mono.delay(this.delay).flatMap(tick -> {
+        if (!tryAcquire()) {
+          LOG.debug("Hedge budget exhausted for {}, waits for the first call", this.serviceName);
+          return Mono.never();
+        }
+        LOG.debug("Call to {} slower than {}, sends a hedge", this.serviceName, this.delay);
+        this.hedgesFired.increment();
+        return call.get().collectList();
+      });
+
+      return Mono.firstWithSignal(
+          primary.map(result -> Tuples.of(false, result)),
+          hedge.map(result -> Tuples.of(true, result)));
+    })
+        .doOnNext(winner -> {
+          if (winner.getT1()) {
+            this.hedgesWon.increment();
+          }
+        })
+        .flatMapMany(winner -> Flux.fromIterable(winner.getT2()));
+  }
+
+  private synchronized void deposit() {
+    this.tokens = Math.min(MAX_TOKENS, this.tokens + this.tokensPerCall);
+  }
+
+  private synchronized boolean tryAcquire() {
+    if (this.tokens < 1.0) {
+      return false;
+    }
+    this.tokens -= 1.0;
+    return true;
+  }
+}
@@ -0,0 +1,176 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Filters a JSON array of objects token by token, as it arrives in chunks, without binding the elements to
+ * objects. Top level fields of the elements can be dropped, and the first value of one of them captured.
+ *
+ * An element is only output once it is complete, so that finish() can always close the array, also when the input
+ * was cut short. Not thread safe, one instance filters one array.
+ */
+public class JsonArrayFilter {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory().setRootValueSeparator(null);
+
+  private final Set<String> droppedFields;
+  private final String capturedField;
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final OutputBuffer output = new OutputBuffer();
+  private final JsonGenerator generator;
+
+  // 0 outside the array, 1 between its elements, 2 in an element and deeper in nested values
+  private int depth;
+  private boolean skipNextValue;
+  private boolean captureNextValue;
+  private int skippedNesting;
+
+  private String capturedValue;
+  private int elementCount;
+  private boolean complete;
+
+  public JsonArrayFilter(Set<String> droppedFields, String capturedField) {
+    this.droppedFields = droppedFields;
+    this.capturedField = capturedField;
+    try {
+      this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+      this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+      this.generator = JSON_FACTORY.createGenerator(this.output);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Filters the next chunk of the array, returns the elements that were completed by it.
+   */
+  public byte[] filter(byte[] chunk) {
+    try {
+      this.feeder.feedInput(chunk, 0, chunk.length);
+
+      JsonToken token;
+      while ((token = this.parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+        onToken(token);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return this.output.takeCompleted();
+  }
+
+  /**
+   * Closes the array. An element that was cut short is left out.
+   */
+  public byte[] finish() {
+    this.feeder.endOfInput();
+    return (this.elementCount == 0 ? "[]" : "]").getBytes();
+  }
+
+  /**
+   * True if the end of the array has been read.
+   */
+  public boolean isComplete() {
+    return this.complete;
+  }
+
+  public String getCapturedValue() {
+    return this.capturedValue;
+  }
+
+  private void onToken(JsonToken token) throws IOException {
+    if (this.depth == 0) {
+      if (token != JsonToken.START_ARRAY || this.complete) {
+        throw new JsonParseException(this.parser, "Expected a single JSON array, got: " + token);
+      }
+      this.depth = 1;
+      return;
+    }
+
+    if (this.depth == 1) {
+      if (token == JsonToken.END_ARRAY) {
+        this.depth = 0;
+        this.complete = true;
+        return;
+      }
+      if (token != JsonToken.START_OBJECT) {
+        throw new JsonParseException(this.parser, "Expected an object in the JSON array, got: " + token);
+      }
+      this.generator.flush();
+      this.output.write(this.elementCount == 0 ? '[' : ',');
+    }
+
+    if (this.skippedNesting > 0 || this.skipNextValue) {
+      skip(token);
+      return;
+    }
+
+    if (token == JsonToken.FIELD_NAME && this.depth == 2 && this.droppedFields.contains(this.parser.getCurrentName())) {
+      this.skipNextValue = true;
+      this.captureNextValue = this.capturedValue == null && this.parser.getCurrentName().equals(this.capturedField);
+      return;
+    }
+
+    this.generator.copyCurrentEvent(this.parser);
+    if (token.isStructStart()) {
+      this.depth++;
+    } else if (token.isStructEnd()) {
+      this.depth--;
+    }
+
+    if (this.depth == 1) {
+      this.generator.flush();
+      this.output.markCompleted();
+      this.elementCount++;
+    }
+  }
+
+  private void skip(JsonToken token) throws IOException {
+    if (this.skipNextValue) {
+      this.skipNextValue = false;
+      if (this.captureNextValue && token == JsonToken.VALUE_STRING) {
+        this.capturedValue = this.parser.getText();
+      }
+      this.captureNextValue = false;
+    }
+
+    if (token.isStructStart()) {
+      this.skippedNesting++;
+    } else if (token.isStructEnd()) {
+      this.skippedNesting--;
+    }
+  }
+
+  /**
+   * Elements are written straight into this buffer, the part holding complete elements is taken after each
+   * chunk and an element that is still incomplete is kept for the next one.
+   */
+  private static class OutputBuffer extends ByteArrayOutputStream {
+
+    private int completed;
+
+    void markCompleted() {
+      this.completed = this.count;
+    }
+
+    byte[] takeCompleted() {
+      byte[] taken = Arrays.copyOf(this.buf, this.completed);
+      System.arraycopy(this.buf, this.completed, this.buf, 0, this.count - this.completed);
+      this.count -= this.completed;
+      this.completed = 0;
+      return taken;
+    }
+  }
+}
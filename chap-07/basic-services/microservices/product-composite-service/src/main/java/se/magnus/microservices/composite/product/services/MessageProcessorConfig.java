@@ -0,0 +1,67 @@
+package se.magnus.microservices.composite.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.binder.BinderHeaders;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+
+import java.util.function.Consumer;
+
+@Configuration
+public class MessageProcessorConfig {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
+
+  private final ProductAggregateCache cache;
+  private final ProductReadModel readModel;
+
+  @Autowired
+  public MessageProcessorConfig(ProductAggregateCache cache, ProductReadModel readModel) {
+    this.cache = cache;
+    this.readModel = readModel;
+  }
+
+  @Bean
+  public Consumer<Event<Integer, Object>> cacheInvalidator() {
+    return event -> {
+      LOG.debug("Invalidates cached product aggregate for {} event with key: {}", event.getEventType(), event.getKey());
+      this.cache.invalidate(event.getKey());
+    };
+  }
+
+  // The read model consumers are only bound by the read_model profile
+
+  @Bean
+  public Consumer<Message<Event<Integer, Product>>> productProjector() {
+    return message -> this.readModel.applyProductEvent(message.getPayload(), partitionOf(message));
+  }
+
+  @Bean
+  public Consumer<Message<Event<Integer, Recommendation>>> recommendationProjector() {
+    return message -> this.readModel.applyRecommendationEvent(message.getPayload(), partitionOf(message));
+  }
+
+  @Bean
+  public Consumer<Message<Event<Integer, Review>>> reviewProjector() {
+    return message -> this.readModel.applyReviewEvent(message.getPayload(), partitionOf(message));
+  }
+
+  /**
+   * The partition the message was read from on Kafka, or the partition it was sent to on RabbitMQ.
+   */
+  private static String partitionOf(Message<?> message) {
+    Object partition = message.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION_ID);
+    if (partition == null) {
+      partition = message.getHeaders().get(BinderHeaders.PARTITION_HEADER);
+    }
+    return (partition == null) ? "0" : partition.toString();
+  }
+}
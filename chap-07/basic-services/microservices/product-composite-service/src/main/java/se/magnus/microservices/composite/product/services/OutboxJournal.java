@@ -0,0 +1,258 @@
+package se.magnus.microservices.composite.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal in memory-mapped segment files. Every record is its length, the CRC32 of its body and the body,
+ * a record that is cut short or does not match its CRC ends the journal when it is opened again.
+ *
+ * Offsets are the base offset of a segment plus the position in it. The acknowledged offset is kept in a checkpoint
+ * file, segments that only hold acknowledged records are deleted. Appends are safe from concurrent threads, reads and
+ * acknowledgements are expected from one thread.
+ */
+public class OutboxJournal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboxJournal.class);
+
+  private static final int HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int END_OF_SEGMENT = -1;
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final boolean force;
+
+  private final ConcurrentSkipListMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+  private final MappedByteBuffer checkpoint;
+
+  private long writeSegmentBase;
+  private volatile long writeOffset;
+  private volatile long acknowledgedOffset;
+
+  /**
+   * @param force if every append and acknowledgement is forced to disk, without it they survive a crash of the
+   *              process but not of the host
+   */
+  public OutboxJournal(Path directory, int segmentSize, int maxSegments, boolean force) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+    this.force = force;
+
+    Files.createDirectories(directory);
+    this.checkpoint = map(directory.resolve("checkpoint"), Long.BYTES);
+
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(SEGMENT_SUFFIX))::iterator) {
+        // Segments written with a larger segment size are kept at their size
+        this.segments.put(baseOffset(file), map(file, (int) Math.max(Files.size(file), segmentSize)));
+      }
+    }
+    if (this.segments.isEmpty()) {
+      this.segments.put(0L, map(segmentFile(0), segmentSize));
+    }
+
+    this.acknowledgedOffset = Math.max(this.checkpoint.getLong(0), this.segments.firstKey());
+    this.writeSegmentBase = this.segments.lastKey();
+    this.writeOffset = findEnd(this.writeSegmentBase, Math.max(this.acknowledgedOffset, this.writeSegmentBase));
+
+    LOG.info("Opened the outbox journal in {}, {} segments, acknowledged offset: {}, end offset: {}",
+        directory, this.segments.size(), this.acknowledgedOffset, this.writeOffset);
+  }
+
+  /**
+   * Returns the offset of the appended record. Fails with a ServiceUnavailableException when the journal has no
+   * free segment left, i.e. when the relay has fallen too far behind.
+   */
+  public synchronized long append(byte[] body) throws IOException {
+    if (HEADER_SIZE + body.length > this.segmentSize) {
+      throw new IllegalArgumentException("Record of " + body.length + " bytes does not fit in a segment of " + this.segmentSize + " bytes");
+    }
+
+    MappedByteBuffer segment = this.segments.get(this.writeSegmentBase);
+    int position = (int) (this.writeOffset - this.writeSegmentBase);
+
+    if (position + HEADER_SIZE + body.length > segment.capacity()) {
+      if (this.segments.size() >= this.maxSegments) {
+        throw new ServiceUnavailableException("Outbox journal is full, " + getBacklog() + " bytes are not yet relayed");
+      }
+      if (segment.capacity() - position >= Integer.BYTES) {
+        segment.putInt(position, END_OF_SEGMENT);
+      }
+      long base = this.writeSegmentBase + segment.capacity();
+      segment = map(segmentFile(base), this.segmentSize);
+      this.segments.put(base, segment);
+      this.writeSegmentBase = base;
+      position = 0;
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    segment.put(position + HEADER_SIZE, body);
+    segment.putInt(position + Integer.BYTES, (int) crc.getValue());
+    // The length goes last, a record is not there until it is
+    segment.putInt(position, body.length);
+    if (this.force) {
+      segment.force(position, HEADER_SIZE + body.length);
+    }
+
+    long offset = this.writeSegmentBase + position;
+    this.writeOffset = offset + HEADER_SIZE + body.length;
+    return offset;
+  }
+
+  /**
+   * Returns up to maxRecords records from the offset on, the offset of a record or the next offset of a record
+   * that was read before.
+   */
+  public List<Record> read(long fromOffset, int maxRecords) {
+    long endOffset = this.writeOffset;
+    List<Record> records = new ArrayList<>();
+
+    long offset = fromOffset;
+    while (records.size() < maxRecords && offset < endOffset) {
+      Map.Entry<Long, MappedByteBuffer> entry = this.segments.floorEntry(offset);
+      MappedByteBuffer segment = entry.getValue();
+      int position = (int) (offset - entry.getKey());
+
+      if (segment.capacity() - position < HEADER_SIZE || segment.getInt(position) == END_OF_SEGMENT) {
+        offset = entry.getKey() + segment.capacity();
+        continue;
+      }
+
+      byte[] body = new byte[segment.getInt(position)];
+      segment.get(position + HEADER_SIZE, body);
+      long nextOffset = offset + HEADER_SIZE + body.length;
+      records.add(new Record(offset, nextOffset, body));
+      offset = nextOffset;
+    }
+    return records;
+  }
+
+  /**
+   * Records before the offset are not read again after a restart.
+   */
+  public synchronized void acknowledge(long offset) {
+    this.checkpoint.putLong(0, offset);
+    if (this.force) {
+      this.checkpoint.force();
+    }
+    this.acknowledgedOffset = offset;
+
+    Map.Entry<Long, MappedByteBuffer> first = this.segments.firstEntry();
+    while (first.getKey() != this.writeSegmentBase && first.getKey() + first.getValue().capacity() <= offset) {
+      this.segments.remove(first.getKey());
+      try {
+        Files.deleteIfExists(segmentFile(first.getKey()));
+      } catch (IOException ex) {
+        LOG.warn("Failed to delete the acknowledged outbox segment {}: {}", first.getKey(), ex.toString());
+      }
+      first = this.segments.firstEntry();
+    }
+  }
+
+  public long getAcknowledgedOffset() {
+    return this.acknowledgedOffset;
+  }
+
+  /**
+   * Bytes appended and not yet acknowledged, including the unused ends of segments.
+   */
+  public long getBacklog() {
+    return this.writeOffset - this.acknowledgedOffset;
+  }
+
+  @Override
+  public synchronized void close() {
+    this.segments.values().forEach(MappedByteBuffer::force);
+    this.checkpoint.force();
+  }
+
+  /**
+   * Skips the valid records from the offset on, the first one that is missing, cut short or corrupt is the end.
+   */
+  private long findEnd(long base, long offset) {
+    MappedByteBuffer segment = this.segments.get(base);
+    int position = (int) (offset - base);
+
+    while (segment.capacity() - position >= HEADER_SIZE) {
+      int length = segment.getInt(position);
+      if (length == END_OF_SEGMENT) {
+        return base + segment.capacity();
+      }
+      if (length <= 0 || length > segment.capacity() - position - HEADER_SIZE) {
+        break;
+      }
+
+      byte[] body = new byte[length];
+      segment.get(position + HEADER_SIZE, body);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if ((int) crc.getValue() != segment.getInt(position + Integer.BYTES)) {
+        LOG.warn("Outbox journal ends with a corrupt record at offset {}", base + position);
+        break;
+      }
+      position += HEADER_SIZE + length;
+    }
+    return base + position;
+  }
+
+  private Path segmentFile(long base) {
+    return this.directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+  }
+
+  private static long baseOffset(Path segmentFile) {
+    String name = segmentFile.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static MappedByteBuffer map(Path file, int size) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  public static class Record {
+    private final long offset;
+    private final long nextOffset;
+    private final byte[] body;
+
+    public Record(long offset, long nextOffset, byte[] body) {
+      this.offset = offset;
+      this.nextOffset = nextOffset;
+      this.body = body;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public long getNextOffset() {
+      return nextOffset;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a product aggregate as JSON, in the same format as ProductAggregate, by splicing the JSON responses of
+ * the recommendation and review services into it. Their elements are filtered on token level instead of being
+ * bound to objects, mapped to summaries and serialized again.
+ *
+ * A section that fails or is cut short is closed after its last complete element and listed in
+ * incompleteSections. One instance writes one aggregate.
+ */
+public class PassThroughAggregateWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PassThroughAggregateWriter.class);
+
+  // Fields of Recommendation and Review that are not part of their summaries
+  private static final Set<String> DROPPED_FIELDS = Set.of("productId", "serviceAddress");
+  private static final String SERVICE_ADDRESS_FIELD = "serviceAddress";
+
+  private final DataBufferFactory bufferFactory;
+  private final JsonArrayFilter recommendations = new JsonArrayFilter(DROPPED_FIELDS, SERVICE_ADDRESS_FIELD);
+  private final JsonArrayFilter reviews = new JsonArrayFilter(DROPPED_FIELDS, SERVICE_ADDRESS_FIELD);
+
+  public PassThroughAggregateWriter(DataBufferFactory bufferFactory) {
+    this.bufferFactory = bufferFactory;
+  }
+
+  /**
+   * The aggregate up to the recommendations.
+   */
+  public DataBuffer writeHead(Product product) {
+    return wrap("{\"productId\":" + product.getProductId()
+        + ",\"name\":" + quote(product.getName())
+        + ",\"weight\":" + product.getWeight()
+        + ",\"recommendations\":");
+  }
+
+  public Flux<DataBuffer> writeRecommendations(Flux<DataBuffer> json) {
+    return writeSection("", ProductAggregate.RECOMMENDATIONS_SECTION, this.recommendations, json);
+  }
+
+  public Flux<DataBuffer> writeReviews(Flux<DataBuffer> json) {
+    return writeSection(",\"reviews\":", ProductAggregate.REVIEWS_SECTION, this.reviews, json);
+  }
+
+  /**
+   * The rest of the aggregate, written when both sections are done.
+   */
+  public DataBuffer writeTail(Product product, String compositeAddress) {
+    List<String> incompleteSections = new ArrayList<>();
+    if (!this.recommendations.isComplete()) {
+      incompleteSections.add(ProductAggregate.RECOMMENDATIONS_SECTION);
+    }
+    if (!this.reviews.isComplete()) {
+      incompleteSections.add(ProductAggregate.REVIEWS_SECTION);
+    }
+
+    return wrap(",\"serviceAddresses\":{\"cmp\":" + quote(compositeAddress)
+        + ",\"pro\":" + quote(product.getServiceAddress())
+        + ",\"rev\":" + quote(orEmpty(this.reviews.getCapturedValue()))
+        + ",\"rec\":" + quote(orEmpty(this.recommendations.getCapturedValue()))
+        + "},\"incompleteSections\":" + incompleteSections.stream().map(this::quote).collect(Collectors.joining(",", "[", "]"))
+        + "}");
+  }
+
+  private Flux<DataBuffer> writeSection(String prefix, String section, JsonArrayFilter filter, Flux<DataBuffer> json) {
+    Flux<DataBuffer> elements = json
+        .map(buffer -> filter.filter(read(buffer)))
+        .filter(bytes -> bytes.length > 0)
+        .map(this.bufferFactory::wrap)
+        // Buffers of the response that are dropped when the call is cancelled
+        .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release)
+        .onErrorResume(ex -> {
+          LOG.warn("Got an exception while reading {}, returns the ones read so far: {}", section, ex.toString());
+          return Flux.empty();
+        });
+
+    return Flux.concat(
+        Mono.fromSupplier(() -> wrap(prefix)),
+        elements,
+        Mono.fromSupplier(() -> this.bufferFactory.wrap(filter.finish())));
+  }
+
+  private static byte[] read(DataBuffer buffer) {
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return bytes;
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private DataBuffer wrap(String json) {
+    return this.bufferFactory.wrap(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String quote(String value) {
+    return value == null ? "null" : "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + "\"";
+  }
+
+  private static String orEmpty(String value) {
+    return value == null ? "" : value;
+  }
+}
@@ -0,0 +1,237 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded, in-process cache of assembled product aggregates.
+ *
+ * Entries are evicted on size and age, and are invalidated per productId when an event for the
+ * product is seen on the products, recommendations and reviews destinations.
+ *
+ * Entries are fresh for the time to live. Versioned entries are then kept for a while longer and
+ * revalidated with conditional GETs to the core services, they are only read again if a part has changed.
+ */
+@Component
+public class ProductAggregateCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateCache.class);
+
+  static final String CACHE_NAME = "productAggregates";
+
+  private final boolean enabled;
+  private final long timeToLiveNanos;
+  private final Cache<Integer, Entry> cache;
+  private final Counter notModified;
+  private final Counter modified;
+
+  // Invalidations per productId while it is being loaded, used to detect loads that raced with an invalidation.
+  // A product is only tracked while it has loads in flight.
+  private final ConcurrentMap<Integer, Loads> loads = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ProductAggregateCache(
+      MeterRegistry meterRegistry,
+      @Value("${app.product-aggregate-cache.enabled:true}") boolean enabled,
+      @Value("${app.product-aggregate-cache.max-size:10000}") long maxSize,
+      @Value("${app.product-aggregate-cache.time-to-live:60s}") Duration timeToLive,
+      @Value("${app.product-aggregate-cache.revalidate-within:0s}") Duration revalidateWithin) {
+
+    this.enabled = enabled;
+    this.timeToLiveNanos = timeToLive.toNanos();
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(timeToLive.plus(revalidateWithin))
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    this.notModified = revalidations(meterRegistry, "not_modified");
+    this.modified = revalidations(meterRegistry, "modified");
+    LOG.info("Created the product aggregate cache, enabled: {}, max size: {}, time to live: {}, revalidate within: {}",
+        enabled, maxSize, timeToLive, revalidateWithin);
+  }
+
+  private static Counter revalidations(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("product.aggregate.cache.revalidations")
+        .description("Number of stale product aggregates revalidated with the core services")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Returns the cached aggregate if it is fresh, or if it is stale and the revalidator finds that none of its
+   * parts are modified. Otherwise the aggregate is loaded, and cached if it is complete.
+   */
+  public Mono<VersionedAggregate> get(
+      int productId,
+      Supplier<Mono<VersionedAggregate>> loader,
+      Function<VersionedAggregate, Mono<Boolean>> revalidator) {
+
+    if (!this.enabled) {
+      return loader.get();
+    }
+
+    Entry cached = this.cache.getIfPresent(productId);
+    if (cached != null && cached.isFresh()) {
+      LOG.debug("Found product aggregate for productId: {} in the cache", productId);
+      return Mono.just(cached.versioned);
+    }
+
+    Mono<VersionedAggregate> load = Mono.defer(() -> {
+      long invalidationsBeforeLoad = beginLoad(productId);
+      return loader.get()
+          .doOnNext(versioned -> put(productId, versioned, invalidationsBeforeLoad))
+          .doFinally(signal -> endLoad(productId));
+    });
+
+    if (cached == null || !cached.versioned.isVersioned()) {
+      return load;
+    }
+
+    return Mono.defer(() -> {
+      long invalidationsBeforeRevalidation = beginLoad(productId);
+      return revalidator.apply(cached.versioned)
+          .flatMap(isModified -> {
+            if (isModified) {
+              LOG.debug("Product aggregate for productId: {} is modified, reloads it", productId);
+              this.modified.increment();
+              return load;
+            }
+
+            LOG.debug("Product aggregate for productId: {} is not modified", productId);
+            this.notModified.increment();
+            put(productId, cached.versioned, invalidationsBeforeRevalidation);
+            return Mono.just(cached.versioned);
+          })
+          .doFinally(signal -> endLoad(productId));
+    });
+  }
+
+  /**
+   * Returns the cached aggregate for the product, or null if it is not cached and fresh. Never loads it.
+   */
+  public ProductAggregate getIfPresent(int productId) {
+    Entry cached = this.enabled ? this.cache.getIfPresent(productId) : null;
+    return (cached != null && cached.isFresh()) ? cached.versioned.getAggregate() : null;
+  }
+
+  public Mono<Map<Integer, ProductAggregate>> getAll(
+      List<Integer> productIds,
+      Function<List<Integer>, Mono<Map<Integer, ProductAggregate>>> loader) {
+
+    if (!this.enabled) {
+      return loader.apply(productIds);
+    }
+
+    // Stale entries are loaded again with the rest, batches are not revalidated
+    Map<Integer, ProductAggregate> found = new HashMap<>();
+    this.cache.getAllPresent(productIds).forEach((productId, cached) -> {
+      if (cached.isFresh()) {
+        found.put(productId, cached.versioned.getAggregate());
+      }
+    });
+    List<Integer> missing = productIds.stream().filter(productId -> !found.containsKey(productId)).collect(Collectors.toList());
+    LOG.debug("Found {} of {} product aggregates in the cache", found.size(), productIds.size());
+
+    if (missing.isEmpty()) {
+      return Mono.just(found);
+    }
+
+    return Mono.defer(() -> {
+      Map<Integer, Long> invalidationsBeforeLoad = new HashMap<>();
+      missing.forEach(productId -> invalidationsBeforeLoad.put(productId, beginLoad(productId)));
+      return loader.apply(missing)
+          .map(loaded -> {
+            loaded.forEach((productId, aggregate) ->
+                put(productId, VersionedAggregate.unversioned(aggregate), invalidationsBeforeLoad.get(productId)));
+            found.putAll(loaded);
+            return found;
+          })
+          .doFinally(signal -> missing.forEach(this::endLoad));
+    });
+  }
+
+  public void invalidate(int productId) {
+    if (!this.enabled) {
+      return;
+    }
+
+    LOG.debug("Invalidates product aggregate for productId: {}", productId);
+    this.loads.computeIfPresent(productId, (id, loads) -> new Loads(loads.inFlight, loads.invalidations + 1));
+    this.cache.invalidate(productId);
+  }
+
+  /**
+   * Returns the invalidations of the product so far, put compares them with the invalidations when the load is done.
+   */
+  private long beginLoad(int productId) {
+    return this.loads.compute(productId, (id, loads) -> (loads == null) ? new Loads(1, 0) : new Loads(loads.inFlight + 1, loads.invalidations))
+        .invalidations;
+  }
+
+  private void endLoad(int productId) {
+    this.loads.computeIfPresent(productId, (id, loads) -> (loads.inFlight == 1) ? null : new Loads(loads.inFlight - 1, loads.invalidations));
+  }
+
+  private void put(int productId, VersionedAggregate versioned, long invalidationsBeforeLoad) {
+    // Sections that did not arrive in time are fetched again on the next request
+    if (!versioned.getAggregate().getIncompleteSections().isEmpty()) {
+      LOG.debug("Does not cache the incomplete product aggregate for productId: {}", productId);
+      return;
+    }
+
+    this.cache.put(productId, new Entry(versioned, System.nanoTime() + this.timeToLiveNanos));
+
+    // An invalidation of the product that arrived while the aggregate was loaded may refer to data older
+    // than what was just read, drop the entry rather than risk serving it until it expires.
+    Loads loads = this.loads.get(productId);
+    if (loads == null || loads.invalidations != invalidationsBeforeLoad) {
+      this.cache.invalidate(productId);
+    }
+  }
+
+  private static class Loads {
+    private final int inFlight;
+    private final long invalidations;
+
+    Loads(int inFlight, long invalidations) {
+      this.inFlight = inFlight;
+      this.invalidations = invalidations;
+    }
+  }
+
+  private static class Entry {
+    private final VersionedAggregate versioned;
+    private final long freshUntilNanos;
+
+    Entry(VersionedAggregate versioned, long freshUntilNanos) {
+      this.versioned = versioned;
+      this.freshUntilNanos = freshUntilNanos;
+    }
+
+    boolean isFresh() {
+      return System.nanoTime() - this.freshUntilNanos < 0;
+    }
+  }
+}
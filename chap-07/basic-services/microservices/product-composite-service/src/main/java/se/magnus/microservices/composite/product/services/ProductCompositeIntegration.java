@@ -1,35 +1,46 @@
 package se.magnus.microservices.composite.product.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
-import org.springframework.cloud.stream.function.StreamBridge;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.recommendation.RecommendationPage;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.config.WebClientConfig;
 import se.magnus.util.http.HttpErrorInfo;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 import static reactor.core.publisher.Flux.empty;
 
@@ -38,34 +49,69 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeIntegration.class);
 
-  private final WebClient webClient;
+  private final WebClient productWebClient;
+  private final WebClient recommendationWebClient;
+  private final WebClient reviewWebClient;
+  private static final MediaType SMILE = MediaType.parseMediaType(WebClientConfig.SMILE_MEDIA_TYPE);
+
   private final ObjectMapper mapper;
+  private final ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
 
   private final String productServiceUrl;
   private final String recommendationServiceUrl;
   private final String reviewServiceUrl;
 
-  private final StreamBridge streamBridge;
+  private final EventOutbox eventOutbox;
+
+  private final RequestCoalescer<Integer> productRequests;
+  private final RequestCoalescer<Integer> recommendationRequests;
+  private final RequestCoalescer<Integer> reviewRequests;
 
-  private final Scheduler publishEventScheduler;
+  private final HedgingPolicy recommendationHedging;
+  private final HedgingPolicy reviewHedging;
+
+  private final AdaptiveConcurrencyLimiter productLimiter;
+  private final AdaptiveConcurrencyLimiter recommendationLimiter;
+  private final AdaptiveConcurrencyLimiter reviewLimiter;
 
   @Autowired
   public ProductCompositeIntegration(
-      @Qualifier("publishEventScheduler") Scheduler publishEventScheduler,
-      WebClient.Builder webClient,
+      @Qualifier("productWebClient") WebClient productWebClient,
+      @Qualifier("recommendationWebClient") WebClient recommendationWebClient,
+      @Qualifier("reviewWebClient") WebClient reviewWebClient,
       ObjectMapper mapper,
-      StreamBridge streamBridge,
+      EventOutbox eventOutbox,
+      MeterRegistry meterRegistry,
       @Value("${app.product-service.host}") String productServiceHost,
       @Value("${app.product-service.port}") int productServicePort,
       @Value("${app.recommendation-service.host}") String recommendationServiceHost,
-      @Value("${app.recommendation-service.port") int recommendationServicePort,
-      @Value("${app.review-service.host") String reviewServiceHost,
-      @Value("${app.review-service.port") int reviewServicePort) {
-
-    this.publishEventScheduler = publishEventScheduler;
-    this.webClient = webClient.build();
+      @Value("${app.recommendation-service.port}") int recommendationServicePort,
+      @Value("${app.review-service.host}") String reviewServiceHost,
+      @Value("${app.review-service.port}") int reviewServicePort,
+      @Value("${app.hedging.enabled:false}") boolean hedgingEnabled,
+      @Value("${app.hedging.delay:100ms}") Duration hedgingDelay,
+      @Value("${app.hedging.max-extra-load-percent:10}") int hedgingMaxExtraLoadPercent,
+      @Value("${app.concurrency-limit.enabled:true}") boolean limitEnabled,
+      @Value("${app.concurrency-limit.initial-limit:20}") int initialLimit,
+      @Value("${app.concurrency-limit.max-limit:200}") int maxLimit,
+      @Value("${app.concurrency-limit.latency-tolerance:2.0}") double latencyTolerance) {
+
+    this.productWebClient = productWebClient;
+    this.recommendationWebClient = recommendationWebClient;
+    this.reviewWebClient = reviewWebClient;
     this.mapper = mapper;
-    this.streamBridge = streamBridge;
+    this.eventOutbox = eventOutbox;
+
+    this.productRequests =        new RequestCoalescer<>("product", meterRegistry);
+    this.recommendationRequests = new RequestCoalescer<>("recommendation", meterRegistry);
+    this.reviewRequests =         new RequestCoalescer<>("review", meterRegistry);
+
+    this.recommendationHedging =  new HedgingPolicy("recommendation", hedgingEnabled, hedgingDelay, hedgingMaxExtraLoadPercent, meterRegistry);
+    this.reviewHedging =          new HedgingPolicy("review", hedgingEnabled, hedgingDelay, hedgingMaxExtraLoadPercent, meterRegistry);
+
+    this.productLimiter =         new AdaptiveConcurrencyLimiter("product", limitEnabled, initialLimit, maxLimit, latencyTolerance, meterRegistry);
+    this.recommendationLimiter =  new AdaptiveConcurrencyLimiter("recommendation", limitEnabled, initialLimit, maxLimit, latencyTolerance, meterRegistry);
+    this.reviewLimiter =          new AdaptiveConcurrencyLimiter("review", limitEnabled, initialLimit, maxLimit, latencyTolerance, meterRegistry);
 
     this.productServiceUrl =          "http://" + productServiceHost + ":" + productServicePort;
     this.recommendationServiceUrl =   "http://" + recommendationServiceHost + ":" + recommendationServicePort;
@@ -74,82 +120,317 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
   @Override
   public Mono<Product> createProduct(Product body) {
-    return Mono.fromCallable(() -> {
-      sendMessage("products-out-0", new Event(Event.Type.CREATE, body.getProductId(), body));
-      return body;
-    }).subscribeOn(publishEventScheduler);
-  }
-
-  private void sendMessage(String bindingName, Event event) {
-    Message message = MessageBuilder.withPayload(event)
-        .setHeader("partitionKey", event.getKey())
-        .build();
-    this.streamBridge.send(bindingName, message);
+    return this.eventOutbox.publish("products-out-0", new Event(Event.Type.CREATE, body.getProductId(), body))
+        .thenReturn(body);
   }
 
   @Override
   public Mono<Product> getProduct(int productId) {
+    return getProductEntity(productId).map(ResponseEntity::getBody);
+  }
+
+  /**
+   * Same as getProduct, with the ETag of the product in the headers.
+   */
+  public Mono<ResponseEntity<Product>> getProductEntity(int productId) {
     String url = this.productServiceUrl + "/product/" + productId;
     LOG.debug("Will call the getProduct API on URL: {}", url);
 
-    return this.webClient.get().uri(url).retrieve().bodyToMono(Product.class).log(LOG.getName(), Level.FINE)
+    // Concurrent requests for the same product share one call to the product service
+    return this.productRequests.coalesce(productId, () ->
+        this.productLimiter.limit(() -> this.productWebClient.get().uri(url).retrieve().toEntity(Product.class))
+            .log(LOG.getName(), Level.FINE)
+            .onErrorMap(WebClientResponseException.class, ex -> handleException(ex)));
+  }
+
+  /**
+   * Asks the product service if the product still has the ETag, without reading it again.
+   */
+  public Mono<Boolean> isProductModified(int productId, String eTag) {
+    return isModified(this.productWebClient, this.productLimiter, this.productServiceUrl + "/product/" + productId, eTag);
+  }
+
+  @Override
+  public Mono<Product> getProduct(int productId, List<String> fields) {
+    String url = this.productServiceUrl + "/product/" + productId + "?fields=" + String.join(",", fields);
+    LOG.debug("Will call the getProduct API on URL: {}", url);
+
+    return this.productLimiter.limit(() -> this.productWebClient.get().uri(url).retrieve().bodyToMono(Product.class))
+        .log(LOG.getName(), Level.FINE)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  }
+
+  @Override
+  public Flux<Product> getProducts(List<Integer> productIds) {
+    String url = this.productServiceUrl + "/product?productIds=" + toQueryParameter(productIds);
+    LOG.debug("Will call the getProducts API on URL: {}", url);
+
+    return this.productLimiter.limitMany(() -> this.productWebClient.get().uri(url).retrieve().bodyToFlux(Product.class))
+        .log(LOG.getName(), Level.FINE)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  }
+
+  @Override
+  public Flux<Product> listProducts(Integer cursor, int limit, String namePrefix, Integer minWeight, Integer maxWeight) {
+    URI url = UriComponentsBuilder.fromUriString(this.productServiceUrl + "/product")
+        .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+        .queryParam("limit", limit)
+        .queryParamIfPresent("namePrefix", Optional.ofNullable(namePrefix))
+        .queryParamIfPresent("minWeight", Optional.ofNullable(minWeight))
+        .queryParamIfPresent("maxWeight", Optional.ofNullable(maxWeight))
+        .encode().build().toUri();
+    LOG.debug("Will call the listProducts API on URL: {}", url);
+
+    return this.productLimiter.limitMany(() -> this.productWebClient.get().uri(url)
+            .accept(MediaType.APPLICATION_NDJSON).retrieve().bodyToFlux(Product.class))
+        .log(LOG.getName(), Level.FINE)
         .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
   }
 
   @Override
   public Mono<Void> deleteProduct(int productId) {
-    return Mono.fromRunnable(() -> sendMessage("products-out-0", new Event(Event.Type.DELETE, productId, null)))
-        .subscribeOn(publishEventScheduler).then();
+    return this.eventOutbox.publish("products-out-0", new Event(Event.Type.DELETE, productId, null));
   }
 
   @Override
   public Mono<Recommendation> createRecommendation(Recommendation body) {
-    return Mono.fromCallable(() -> {
-      sendMessage("recommendations-out-0", new Event(Event.Type.CREATE, body.getProductId(), body));
-      return body;
-    }).subscribeOn(publishEventScheduler);
+    return this.eventOutbox.publish("recommendations-out-0", new Event(Event.Type.CREATE, body.getProductId(), body))
+        .thenReturn(body);
+  }
+
+  @Override
+  public Flux<Recommendation> createRecommendations(int productId, List<Recommendation> body) {
+    return this.eventOutbox.publish("recommendations-out-0", Event.batch(productId, body))
+        .thenMany(Flux.fromIterable(body));
   }
 
   @Override
   public Flux<Recommendation> getRecommendations(int productId) {
+    return getRecommendationsEntity(productId).flatMapIterable(ResponseEntity::getBody);
+  }
+
+  /**
+   * Same as getRecommendations, with the ETag of the recommendations in the headers. Errors are passed on, so that
+   * the recommendations can be marked as incomplete rather than as empty.
+   */
+  public Mono<ResponseEntity<List<Recommendation>>> getRecommendationsEntity(int productId) {
+    String url = this.recommendationServiceUrl + "/recommendation?productId=" + productId;
+
+    LOG.debug("Will call the getRecommendations API on URL: {}", url);
+
+    // Slow calls are hedged inside the coalesced call, so concurrent callers also share the hedge
+    return this.recommendationRequests.coalesce(productId, () -> this.recommendationHedging.hedge(() ->
+        this.recommendationLimiter.limit(() -> this.recommendationWebClient.get().uri(url).retrieve()
+                .toEntityList(Recommendation.class))
+            .log(LOG.getName(), Level.FINE)
+            .flux())
+        .next());
+  }
+
+  /**
+   * Asks the recommendation service if the recommendations of the product still have the ETag, without reading
+   * them again.
+   */
+  public Mono<Boolean> isRecommendationsModified(int productId, String eTag) {
+    return isModified(this.recommendationWebClient, this.recommendationLimiter,
+        this.recommendationServiceUrl + "/recommendation?productId=" + productId, eTag);
+  }
+
+  /**
+   * Same as getRecommendations but not shared with concurrent callers, elements are not kept in memory after
+   * they have been emitted.
+   */
+  public Flux<Recommendation> streamRecommendations(int productId) {
     String url = this.recommendationServiceUrl + "/recommendation?productId=" + productId;
 
-    return this.webClient.get().uri(url).retrieve()
-        .bodyToFlux(Recommendation.class)
+    LOG.debug("Will call the getRecommendations API on URL: {}", url);
+
+    return this.recommendationLimiter.limitMany(() -> this.recommendationWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Recommendation.class))
         .log(LOG.getName(), Level.FINE)
         .onErrorResume(error -> empty());
   }
 
+  /**
+   * The recommendations as the JSON array returned by the recommendation service, for pass-through aggregation.
+   * Errors are not handled.
+   */
+  public Flux<DataBuffer> getRecommendationsAsJson(int productId) {
+    String url = this.recommendationServiceUrl + "/recommendation?productId=" + productId;
+
+    LOG.debug("Will call the getRecommendations API on URL: {}, as JSON", url);
+
+    return this.recommendationLimiter.limitMany(() -> this.recommendationWebClient.get().uri(url)
+        .accept(MediaType.APPLICATION_JSON)
+        .retrieve()
+        .bodyToFlux(DataBuffer.class));
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendations(int productId, List<String> fields) {
+    String url = this.recommendationServiceUrl + "/recommendation?productId=" + productId + "&fields=" + String.join(",", fields);
+
+    LOG.debug("Will call the getRecommendations API on URL: {}", url);
+
+    return this.recommendationLimiter.limitMany(() -> this.recommendationWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Recommendation.class))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  @Override
+  public Mono<RecommendationPage> getRecommendationPage(int productId, int limit, Integer cursor) {
+    String url = this.recommendationServiceUrl + "/recommendation?productId=" + productId + "&limit=" + limit
+        + ((cursor == null) ? "" : "&cursor=" + cursor);
+
+    LOG.debug("Will call the getRecommendationPage API on URL: {}", url);
+
+    return this.recommendationLimiter.limit(() -> this.recommendationWebClient.get().uri(url).retrieve()
+            .bodyToMono(RecommendationPage.class))
+        .log(LOG.getName(), Level.FINE)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+    String url = this.recommendationServiceUrl + "/recommendation?productIds=" + toQueryParameter(productIds);
+
+    LOG.debug("Will call the getRecommendationsForProducts API on URL: {}", url);
+
+    return this.recommendationLimiter.limitMany(() -> this.recommendationWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Recommendation.class))
+        .log(LOG.getName(), Level.FINE);
+  }
+
   @Override
   public Mono<Void> deleteRecommendations(int productId) {
-    return Mono.fromRunnable(() -> sendMessage("recommendations-out-0", new Event(Event.Type.DELETE, productId, null)))
-        .subscribeOn(publishEventScheduler).then();
+    return this.eventOutbox.publish("recommendations-out-0", new Event(Event.Type.DELETE, productId, null));
   }
 
   @Override
   public Mono<Review> createReview(Review body) {
-    return Mono.fromCallable(() -> {
-      sendMessage("reviews-out-0", new Event(Event.Type.CREATE, body.getProductId(), body));
-      return body;
-    }).subscribeOn(publishEventScheduler);
+    return this.eventOutbox.publish("reviews-out-0", new Event(Event.Type.CREATE, body.getProductId(), body))
+        .thenReturn(body);
+  }
+
+  @Override
+  public Flux<Review> createReviews(int productId, List<Review> body) {
+    return this.eventOutbox.publish("reviews-out-0", Event.batch(productId, body))
+        .thenMany(Flux.fromIterable(body));
   }
 
   @Override
   public Flux<Review> getReviews(int productId) {
+    return getReviewsEntity(productId).flatMapIterable(ResponseEntity::getBody);
+  }
+
+  /**
+   * Same as getReviews, with the ETag of the reviews in the headers. Errors are passed on, so that the reviews can be
+   * marked as incomplete rather than as empty.
+   */
+  public Mono<ResponseEntity<List<Review>>> getReviewsEntity(int productId) {
+    String url = this.reviewServiceUrl + "/review?productId=" + productId;
+
+    LOG.debug("Will call the getReviews API on URL: {}", url);
+
+    return this.reviewRequests.coalesce(productId, () -> this.reviewHedging.hedge(() ->
+        this.reviewLimiter.limit(() -> this.reviewWebClient.get().uri(url).retrieve()
+                .toEntityList(Review.class))
+            .log(LOG.getName(), Level.FINE)
+            .flux())
+        .next());
+  }
+
+  /**
+   * Asks the review service if the reviews of the product still have the ETag, without reading them again.
+   */
+  public Mono<Boolean> isReviewsModified(int productId, String eTag) {
+    return isModified(this.reviewWebClient, this.reviewLimiter, this.reviewServiceUrl + "/review?productId=" + productId, eTag);
+  }
+
+  /**
+   * Same as getReviews but not shared with concurrent callers, elements are not kept in memory after
+   * they have been emitted.
+   */
+  public Flux<Review> streamReviews(int productId) {
     String url = this.reviewServiceUrl + "/review?productId=" + productId;
 
     LOG.debug("Will call the getReviews API on URL: {}", url);
 
-    return this.webClient.get().uri(url).retrieve()
-        .bodyToFlux(Review.class).log(LOG.getName(), Level.FINE)
+    return this.reviewLimiter.limitMany(() -> this.reviewWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Review.class))
+        .log(LOG.getName(), Level.FINE)
         .onErrorResume(error -> empty());
   }
 
+  /**
+   * The reviews as the JSON array returned by the review service, for pass-through aggregation. Errors are not
+   * handled.
+   */
+  public Flux<DataBuffer> getReviewsAsJson(int productId) {
+    String url = this.reviewServiceUrl + "/review?productId=" + productId;
+
+    LOG.debug("Will call the getReviews API on URL: {}, as JSON", url);
+
+    return this.reviewLimiter.limitMany(() -> this.reviewWebClient.get().uri(url)
+        .accept(MediaType.APPLICATION_JSON)
+        .retrieve()
+        .bodyToFlux(DataBuffer.class));
+  }
+
+  @Override
+  public Flux<Review> getReviews(int productId, List<String> fields) {
+    String url = this.reviewServiceUrl + "/review?productId=" + productId + "&fields=" + String.join(",", fields);
+
+    LOG.debug("Will call the getReviews API on URL: {}", url);
+
+    return this.reviewLimiter.limitMany(() -> this.reviewWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Review.class))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  @Override
+  public Mono<ReviewPage> getReviewPage(int productId, int limit, Integer cursor) {
+    String url = this.reviewServiceUrl + "/review?productId=" + productId + "&limit=" + limit
+        + ((cursor == null) ? "" : "&cursor=" + cursor);
+
+    LOG.debug("Will call the getReviewPage API on URL: {}", url);
+
+    return this.reviewLimiter.limit(() -> this.reviewWebClient.get().uri(url).retrieve()
+            .bodyToMono(ReviewPage.class))
+        .log(LOG.getName(), Level.FINE)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  }
+
+  @Override
+  public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+    String url = this.reviewServiceUrl + "/review?productIds=" + toQueryParameter(productIds);
+
+    LOG.debug("Will call the getReviewsForProducts API on URL: {}", url);
+
+    return this.reviewLimiter.limitMany(() -> this.reviewWebClient.get().uri(url).retrieve()
+            .bodyToFlux(Review.class))
+        .log(LOG.getName(), Level.FINE);
+  }
+
   @Override
   public Mono<Void> deleteReviews(int productId) {
-    return Mono.fromRunnable(() -> sendMessage("reviews-out-0", new Event(Event.Type.DELETE, productId, null)))
-        .subscribeOn(publishEventScheduler).then();
+    return this.eventOutbox.publish("reviews-out-0", new Event(Event.Type.DELETE, productId, null));
+
+  }
+
+  private Mono<Boolean> isModified(WebClient webClient, AdaptiveConcurrencyLimiter limiter, String url, String eTag) {
+    LOG.debug("Will revalidate ETag {} on URL: {}", eTag, url);
+
+    // Anything but a 304 Not Modified, errors included, is taken as a change
+    return limiter.limit(() -> webClient.get().uri(url)
+            .ifNoneMatch(eTag)
+            .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode() != HttpStatus.NOT_MODIFIED)))
+        .log(LOG.getName(), Level.FINE)
+        .onErrorResume(error -> Mono.just(true));
+  }
 
+  private String toQueryParameter(List<Integer> productIds) {
+    return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
   }
 
   private Throwable handleException(Throwable ex) {
@@ -175,21 +456,21 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
   }
 
   public Mono<Health> getProductHealth() {
-    return this.getHealth(this.productServiceUrl);
+    return this.getHealth(this.productWebClient, this.productServiceUrl);
   }
 
   public Mono<Health> getRecommendationHealth() {
-    return this.getHealth(this.recommendationServiceUrl);
+    return this.getHealth(this.recommendationWebClient, this.recommendationServiceUrl);
   }
 
   public Mono<Health> getReviewHealth() {
-    return this.getHealth(this.reviewServiceUrl);
+    return this.getHealth(this.reviewWebClient, this.reviewServiceUrl);
   }
 
-  private Mono<Health> getHealth(String url) {
+  private Mono<Health> getHealth(WebClient webClient, String url) {
     url += "/actuator/health";
     LOG.debug("Will call the Health API on URL: {}", url);
-    return this.webClient.get().uri(url).retrieve().bodyToMono(String.class)
+    return webClient.get().uri(url).retrieve().bodyToMono(String.class)
         .map(s -> new Health.Builder().up().build())
         .onErrorResume(ex -> Mono.just(new Health.Builder().down(ex).build()))
         .log(LOG.getName(), Level.FINE);
@@ -197,7 +478,10 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
   private String getErrorMessage(WebClientResponseException ex) {
     try {
-      return this.mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+      // Errors are returned in the encoding that was negotiated for the response
+      MediaType contentType = ex.getHeaders().getContentType();
+      ObjectMapper errorMapper = (contentType != null && SMILE.isCompatibleWith(contentType)) ? this.smileMapper : this.mapper;
+      return errorMapper.readValue(ex.getResponseBodyAsByteArray(), HttpErrorInfo.class).getMessage();
     }
     catch (IOException ioex) {
       return ioex.getMessage();
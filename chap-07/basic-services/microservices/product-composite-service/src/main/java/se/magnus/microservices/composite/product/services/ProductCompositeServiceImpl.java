@@ -3,17 +3,29 @@ package se.magnus.microservices.composite.product.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.composite.product.*;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.util.http.ConditionalGet;
 import se.magnus.util.http.ServiceUtil;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -23,36 +35,359 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
   private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeServiceImpl.class);
   private final ServiceUtil serviceUtil;
   private ProductCompositeIntegration integration;
+  private final ProductAggregateCache cache;
+  private final ProductReadModel readModel;
+  private final int maxBatchSize;
+  private final Duration latencyBudget;
 
   @Autowired
   public ProductCompositeServiceImpl(
       ServiceUtil serviceUtil,
-      ProductCompositeIntegration integration) {
+      ProductCompositeIntegration integration,
+      ProductAggregateCache cache,
+      ProductReadModel readModel,
+      @Value("${app.product-composite.max-batch-size:100}") int maxBatchSize,
+      @Value("${app.product-composite.latency-budget:0s}") Duration latencyBudget) {
 
     this.serviceUtil = serviceUtil;
     this.integration = integration;
+    this.cache = cache;
+    this.readModel = readModel;
+    this.maxBatchSize = maxBatchSize;
+    this.latencyBudget = latencyBudget;
   }
 
   @Override
-  public Mono<ProductAggregate> getProduct(int productId) {
+  public Mono<ProductAggregate> getProduct(
+      int productId,
+      List<String> fields,
+      Integer recommendationLimit,
+      Integer recommendationCursor,
+      Integer reviewLimit,
+      Integer reviewCursor) {
 
-    LOG.info("Will get composite product info for product.id={}", productId);
+    validatePage("recommendation", recommendationLimit, recommendationCursor);
+    validatePage("review", reviewLimit, reviewCursor);
+    boolean paged = recommendationLimit != null || reviewLimit != null;
+
+    if (this.readModel.isEnabled()) {
+      return getProductFromReadModel(productId, fields, recommendationLimit, recommendationCursor, reviewLimit, reviewCursor);
+    }
+
+    if (paged) {
+      AggregateFieldSelection selection = (fields == null || fields.isEmpty()) ? null : AggregateFieldSelection.parse(fields);
+      LOG.info("Will get composite product info for product.id={}, fields={}, a page of recommendations: {}, a page of reviews: {}",
+          productId, fields, recommendationLimit != null, reviewLimit != null);
+      return getPagedCompositeProduct(productId, selection, recommendationLimit, recommendationCursor, reviewLimit, reviewCursor);
+    }
+
+    if (fields == null || fields.isEmpty()) {
+      LOG.info("Will get composite product info for product.id={}", productId);
+
+      // Clients that already have the version of the aggregate get a 304 Not Modified
+      return this.cache.get(productId, () -> getCompositeProduct(productId), this::isModified)
+          .flatMap(versioned -> ConditionalGet.withETag(versioned.getETag(), Mono.just(versioned.getAggregate())));
+    }
+
+    AggregateFieldSelection selection = AggregateFieldSelection.parse(fields);
+    LOG.info("Will get composite product info for product.id={}, fields={}", productId, fields);
+
+    // A complete aggregate that already is cached is cheaper to trim than to fetch the fields again
+    ProductAggregate cached = this.cache.getIfPresent(productId);
+    if (cached != null) {
+      return Mono.just(selection.apply(cached));
+    }
+
+    return getSparseCompositeProduct(productId, selection);
+  }
+
+  private Mono<ProductAggregate> getProductFromReadModel(
+      int productId,
+      List<String> fields,
+      Integer recommendationLimit,
+      Integer recommendationCursor,
+      Integer reviewLimit,
+      Integer reviewCursor) {
+
+    // The read model holds complete aggregates with the lists in id order, pages and sparse fieldsets are cut from them
+    AggregateFieldSelection selection = (fields == null || fields.isEmpty()) ? null : AggregateFieldSelection.parse(fields);
+    LOG.info("Will get composite product info for product.id={} from the read model", productId);
+
+    return this.readModel.get(productId)
+        .map(aggregate -> {
+          if (recommendationLimit == null && reviewLimit == null) {
+            return aggregate;
+          }
+          Page<RecommendationSummary> recommendations = (recommendationLimit == null) ? null
+              : Page.slice(aggregate.getRecommendations(), RecommendationSummary::getRecommendationId, recommendationLimit, recommendationCursor);
+          Page<ReviewSummary> reviews = (reviewLimit == null) ? null
+              : Page.slice(aggregate.getReviews(), ReviewSummary::getReviewId, reviewLimit, reviewCursor);
+
+          return new ProductAggregate(
+              aggregate.getProductId(),
+              aggregate.getName(),
+              aggregate.getWeight(),
+              (recommendations == null) ? aggregate.getRecommendations() : recommendations.items,
+              (reviews == null) ? aggregate.getReviews() : reviews.items,
+              aggregate.getServiceAddresses(),
+              aggregate.getIncompleteSections(),
+              (recommendations == null) ? null : recommendations.totalCount,
+              (recommendations == null) ? null : recommendations.nextCursor,
+              (reviews == null) ? null : reviews.totalCount,
+              (reviews == null) ? null : reviews.nextCursor);
+        })
+        .map(aggregate -> (selection == null) ? aggregate : selection.apply(aggregate))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  private Mono<ProductAggregate> getPagedCompositeProduct(
+      int productId,
+      AggregateFieldSelection selection,
+      Integer recommendationLimit,
+      Integer recommendationCursor,
+      Integer reviewLimit,
+      Integer reviewCursor) {
+
+    // Sections with a limit are read a page at a time by the core services, sections without one are read whole.
+    // Pages are not cached, the cache only holds complete aggregates.
+
+    Mono<Optional<Page<Recommendation>>> recommendations;
+    if (selection != null && !selection.includesRecommendations()) {
+      recommendations = Mono.just(Optional.of(Page.empty()));
+    } else if (recommendationLimit == null) {
+      recommendations = withinBudget(ProductAggregate.RECOMMENDATIONS_SECTION, this.integration.getRecommendations(productId))
+          .map(arrived -> arrived.map(Page::whole));
+    } else {
+      recommendations = withinBudget(ProductAggregate.RECOMMENDATIONS_SECTION,
+          this.integration.getRecommendationPage(productId, recommendationLimit, recommendationCursor)
+              .map(page -> new Page<>(page.getRecommendations(), page.getTotalCount(), page.getNextCursor())));
+    }
+
+    Mono<Optional<Page<Review>>> reviews;
+    if (selection != null && !selection.includesReviews()) {
+      reviews = Mono.just(Optional.of(Page.empty()));
+    } else if (reviewLimit == null) {
+      reviews = withinBudget(ProductAggregate.REVIEWS_SECTION, this.integration.getReviews(productId))
+          .map(arrived -> arrived.map(Page::whole));
+    } else {
+      reviews = withinBudget(ProductAggregate.REVIEWS_SECTION,
+          this.integration.getReviewPage(productId, reviewLimit, reviewCursor)
+              .map(page -> new Page<>(page.getReviews(), page.getTotalCount(), page.getNextCursor())));
+    }
+
+    Mono<Product> product = (selection == null)
+        ? this.integration.getProduct(productId)
+        : this.integration.getProduct(productId, selection.getProductFields());
+
+    return Mono.zip(product, recommendations, reviews)
+        .map(results -> {
+          Optional<Page<Recommendation>> recommendationPage = results.getT2();
+          Optional<Page<Review>> reviewPage = results.getT3();
+
+          ProductAggregate aggregate = createProductAggregate(
+              results.getT1(),
+              recommendationPage.map(page -> page.items),
+              reviewPage.map(page -> page.items),
+              this.serviceUtil.getServiceAddress());
+
+          // Counts and cursors are only returned for the sections that were paged and arrived in time
+          Page<Recommendation> pagedRecommendations = (recommendationLimit == null) ? null : recommendationPage.orElse(null);
+          Page<Review> pagedReviews = (reviewLimit == null) ? null : reviewPage.orElse(null);
+
+          ProductAggregate paged = new ProductAggregate(
+              aggregate.getProductId(),
+              aggregate.getName(),
+              aggregate.getWeight(),
+              aggregate.getRecommendations(),
+              aggregate.getReviews(),
+              aggregate.getServiceAddresses(),
+              aggregate.getIncompleteSections(),
+              (pagedRecommendations == null) ? null : pagedRecommendations.totalCount,
+              (pagedRecommendations == null) ? null : pagedRecommendations.nextCursor,
+              (pagedReviews == null) ? null : pagedReviews.totalCount,
+              (pagedReviews == null) ? null : pagedReviews.nextCursor);
+
+          return (selection == null) ? paged : selection.apply(paged);
+        })
+        .doOnError(ex -> LOG.warn("getPagedCompositeProduct failed: {}", ex.toString()))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  private static void validatePage(String section, Integer limit, Integer cursor) {
+    if (limit != null && limit < 1) {
+      throw new InvalidInputException("Invalid " + section + "Limit: " + limit);
+    }
+    if (cursor != null && limit == null) {
+      throw new InvalidInputException("A " + section + "Cursor requires a " + section + "Limit");
+    }
+  }
+
+  private Mono<ProductAggregate> getSparseCompositeProduct(int productId, AggregateFieldSelection selection) {
+    // Only the core services holding selected fields are called, each asked for the selected fields only.
+    // Sparse aggregates are not cached, the cache only holds complete ones.
+
+    // Sections that are not selected are left out by the selection, an empty list is as good as any for them
+    Mono<Optional<List<Recommendation>>> recommendations = !selection.includesRecommendations()
+        ? Mono.just(Optional.of(List.of()))
+        : withinBudget(ProductAggregate.RECOMMENDATIONS_SECTION, selection.getRecommendationFields().isEmpty()
+            ? this.integration.getRecommendations(productId)
+            : this.integration.getRecommendations(productId, selection.getRecommendationFields()));
+
+    Mono<Optional<List<Review>>> reviews = !selection.includesReviews()
+        ? Mono.just(Optional.of(List.of()))
+        : withinBudget(ProductAggregate.REVIEWS_SECTION, selection.getReviewFields().isEmpty()
+            ? this.integration.getReviews(productId)
+            : this.integration.getReviews(productId, selection.getReviewFields()));
+
+    return Mono.zip(this.integration.getProduct(productId, selection.getProductFields()), recommendations, reviews)
+        .map(results -> selection.apply(createProductAggregate(
+            results.getT1(),
+            results.getT2(),
+            results.getT3(),
+            this.serviceUtil.getServiceAddress())))
+        .doOnError(ex -> LOG.warn("getSparseCompositeProduct failed: {}", ex.toString()))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  private Mono<VersionedAggregate> getCompositeProduct(int productId) {
     // call 3 APIs in parallel, uses static zip method on Mono class.
     // zip method will run parallel requests and zip the results together once they are complete.
+    // The product is always waited for, recommendations and reviews only within the latency budget.
+    // The ETags of the parts are kept with the aggregate, a part that did not arrive has none.
 
     return Mono.zip(
-      aggregateInfo -> createProductAggregate(
-          (Product) aggregateInfo[0],
-          (List<Recommendation>) aggregateInfo[1],
-          (List<Review>) aggregateInfo[2],
-          this.serviceUtil.getServiceAddress()),
-            this.integration.getProduct(productId),
-        this.integration.getRecommendations(productId).collectList(),
-        this.integration.getReviews(productId).collectList())
+            this.integration.getProductEntity(productId),
+        withinBudget(ProductAggregate.RECOMMENDATIONS_SECTION, this.integration.getRecommendationsEntity(productId)),
+        withinBudget(ProductAggregate.REVIEWS_SECTION, this.integration.getReviewsEntity(productId)))
+        .map(results -> new VersionedAggregate(
+            createProductAggregate(
+                results.getT1().getBody(),
+                results.getT2().map(ResponseEntity::getBody),
+                results.getT3().map(ResponseEntity::getBody),
+                this.serviceUtil.getServiceAddress()),
+            results.getT1().getHeaders().getETag(),
+            results.getT2().map(entity -> entity.getHeaders().getETag()).orElse(null),
+            results.getT3().map(entity -> entity.getHeaders().getETag()).orElse(null)))
         .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString()))
         .log(LOG.getName(), Level.FINE);
   }
 
+  /**
+   * Revalidates a cached aggregate with one conditional GET per part, it is modified unless all parts are not.
+   */
+  private Mono<Boolean> isModified(VersionedAggregate versioned) {
+    int productId = versioned.getAggregate().getProductId();
+    return Mono.zip(
+        this.integration.isProductModified(productId, versioned.getProductETag()),
+        this.integration.isRecommendationsModified(productId, versioned.getRecommendationsETag()),
+        this.integration.isReviewsModified(productId, versioned.getReviewsETag()))
+        .map(results -> results.getT1() || results.getT2() || results.getT3());
+  }
+
+  @Override
+  public Flux<DataBuffer> getProductPassThrough(int productId) {
+
+    LOG.info("Will get composite product info for product.id={}, passed through", productId);
+
+    // Recommendations and reviews are spliced into the response as they arrive, they are never bound to objects.
+    // mergeSequential calls all three services at once and buffers the reviews until the recommendations are done.
+    return Flux.defer(() -> {
+      PassThroughAggregateWriter writer = new PassThroughAggregateWriter(DefaultDataBufferFactory.sharedInstance);
+      Mono<Product> product = this.integration.getProduct(productId).cache();
+
+      return Flux.concat(
+          Flux.mergeSequential(
+              product.map(writer::writeHead),
+              writer.writeRecommendations(withinBudget(this.integration.getRecommendationsAsJson(productId))),
+              writer.writeReviews(withinBudget(this.integration.getReviewsAsJson(productId)))),
+          product.map(p -> writer.writeTail(p, this.serviceUtil.getServiceAddress())));
+    })
+        .doOnError(ex -> LOG.warn("getProductPassThrough failed: {}", ex.toString()));
+  }
+
+  @Override
+  public Flux<ProductAggregateSection> getProductStream(int productId) {
+
+    LOG.info("Will stream composite product info for product.id={}", productId);
+
+    Flux<ProductAggregateSection> header = this.integration.getProduct(productId)
+        .map(product -> new ProductAggregateSection(
+            new ProductSummary(product.getProductId(), product.getName(), product.getWeight())))
+        .flux();
+
+    Flux<ProductAggregateSection> details = Flux.merge(
+        this.integration.streamRecommendations(productId)
+            .map(r -> new ProductAggregateSection(
+                new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent()))),
+        this.integration.streamReviews(productId)
+            .map(r -> new ProductAggregateSection(
+                new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))));
+
+    // mergeSequential subscribes to all three calls at once but emits the product header first,
+    // recommendations and reviews are then emitted in the order they arrive.
+    return Flux.mergeSequential(header, details)
+        .doOnError(ex -> LOG.warn("getCompositeProductStream failed: {}", ex.toString()))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  @Override
+  public Mono<ProductAggregateBatch> getProducts(List<Integer> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      throw new InvalidInputException("No productIds specified");
+    }
+    if (productIds.size() > this.maxBatchSize) {
+      throw new InvalidInputException("Too many productIds: " + productIds.size() + ", max is: " + this.maxBatchSize);
+    }
+
+    List<Integer> distinctProductIds = productIds.stream().distinct().collect(Collectors.toList());
+    LOG.info("Will get composite product info for {} products", distinctProductIds.size());
+
+    Mono<Map<Integer, ProductAggregate>> found = this.readModel.isEnabled()
+        ? Mono.fromSupplier(() -> this.readModel.getAll(distinctProductIds))
+        : this.cache.getAll(distinctProductIds, this::getCompositeProducts);
+
+    return found
+        .map(aggregates -> {
+          List<ProductAggregate> products = new ArrayList<>();
+          List<Integer> notFoundProductIds = new ArrayList<>();
+
+          distinctProductIds.forEach(productId -> {
+            ProductAggregate aggregate = aggregates.get(productId);
+            if (aggregate != null) {
+              products.add(aggregate);
+            } else {
+              notFoundProductIds.add(productId);
+            }
+          });
+
+          return new ProductAggregateBatch(products, notFoundProductIds);
+        })
+        .doOnError(ex -> LOG.warn("getCompositeProducts failed: {}", ex.toString()))
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  private Mono<Map<Integer, ProductAggregate>> getCompositeProducts(List<Integer> productIds) {
+    // One request per core service for all products, the results are grouped by productId afterwards
+    return Mono.zip(
+        this.integration.getProducts(productIds).collectList(),
+        withinBudget(ProductAggregate.RECOMMENDATIONS_SECTION, this.integration.getRecommendationsForProducts(productIds)),
+        withinBudget(ProductAggregate.REVIEWS_SECTION, this.integration.getReviewsForProducts(productIds)))
+        .map(results -> {
+          Optional<Map<Integer, List<Recommendation>>> recommendations =
+              results.getT2().map(list -> list.stream().collect(Collectors.groupingBy(Recommendation::getProductId)));
+          Optional<Map<Integer, List<Review>>> reviews =
+              results.getT3().map(list -> list.stream().collect(Collectors.groupingBy(Review::getProductId)));
+
+          return results.getT1().stream()
+              .collect(Collectors.toMap(Product::getProductId, product -> createProductAggregate(
+                  product,
+                  recommendations.map(map -> map.getOrDefault(product.getProductId(), Collections.emptyList())),
+                  reviews.map(map -> map.getOrDefault(product.getProductId(), Collections.emptyList())),
+                  this.serviceUtil.getServiceAddress()),
+                  (first, second) -> first));
+        });
+  }
+
   @Override
   public Mono<Void> createProduct(ProductAggregate body) {
     try {
@@ -60,24 +395,24 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
       List<Mono> monoList = new ArrayList<>();
 
       LOG.debug("createCompositeProduct: creates a new composite entity for productId: {}", body.getProductId());
+      this.cache.invalidate(body.getProductId());
 
       Product product = new Product(body.getProductId(), body.getName(), body.getWeight(), null);
       monoList.add(this.integration.createProduct(product));
 
-      if (body.getRecommendations() != null) {
-        body.getRecommendations().forEach(r -> {
-          Recommendation recommendation = new Recommendation(body.getProductId(), r.getRecommendationId(),
-              r.getAuthor(), r.getRate(), r.getContent(), null);
-          monoList.add(this.integration.createRecommendation(recommendation));
-        });
+      // Recommendations and reviews are sent as one CREATE_BATCH event each, not one event per item
+      if (body.getRecommendations() != null && !body.getRecommendations().isEmpty()) {
+        List<Recommendation> recommendations = body.getRecommendations().stream()
+            .map(r -> new Recommendation(body.getProductId(), r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null))
+            .collect(Collectors.toList());
+        monoList.add(this.integration.createRecommendations(body.getProductId(), recommendations).collectList());
       }
 
-      if (body.getReviews() != null) {
-        body.getReviews().forEach(r -> {
-          Review review = new Review(body.getProductId(), r.getReviewId(), r.getAuthor(), r.getSubject(),
-              r.getContent(), null);
-          monoList.add(this.integration.createReview(review));
-        });
+      if (body.getReviews() != null && !body.getReviews().isEmpty()) {
+        List<Review> reviews = body.getReviews().stream()
+            .map(r -> new Review(body.getProductId(), r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent(), null))
+            .collect(Collectors.toList());
+        monoList.add(this.integration.createReviews(body.getProductId(), reviews).collectList());
       }
 
       return Mono.zip(r -> "", monoList.toArray(new Mono[0]))
@@ -94,6 +429,7 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
   public Mono<Void> deleteProduct(int productId) {
     try {
       LOG.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
+      this.cache.invalidate(productId);
 
       return Mono.zip(
           r -> "",
@@ -109,12 +445,59 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     }
   }
 
+  /**
+   * Collects a section of the aggregate, or returns an empty Optional if it fails or does not arrive within the
+   * latency budget. The call is then cancelled, and the section is marked as incomplete rather than left empty.
+   */
+  private <T> Mono<Optional<List<T>>> withinBudget(String section, Flux<T> items) {
+    return withinBudget(section, items.collectList());
+  }
+
+  /**
+   * Same for a section that is read in one piece, such as a page. A section that fails is marked as incomplete,
+   * unless the core service rejected the request.
+   */
+  private <T> Mono<Optional<T>> withinBudget(String section, Mono<T> item) {
+    Mono<Optional<T>> collected = item.map(Optional::of)
+        .onErrorResume(ex -> !(ex instanceof InvalidInputException), ex -> {
+          LOG.warn("Failed to get {}, returns the aggregate without them: {}", section, ex.toString());
+          return Mono.just(Optional.empty());
+        });
+    if (this.latencyBudget.isZero()) {
+      return collected;
+    }
+
+    return collected.timeout(this.latencyBudget, Mono.fromSupplier(() -> {
+      LOG.debug("No {} within the latency budget of {}, returns the aggregate without them", section, this.latencyBudget);
+      return Optional.empty();
+    }));
+  }
+
+  /**
+   * Cuts a section of a pass-through aggregate short when the latency budget is spent.
+   */
+  private Flux<DataBuffer> withinBudget(Flux<DataBuffer> json) {
+    return this.latencyBudget.isZero() ? json : json.takeUntilOther(Mono.delay(this.latencyBudget));
+  }
+
   private ProductAggregate createProductAggregate(
       Product product,
-      List<Recommendation> recommendations,
-      List<Review> reviews,
+      Optional<List<Recommendation>> arrivedRecommendations,
+      Optional<List<Review>> arrivedReviews,
       String serviceAddress) {
 
+    // Sections that did not arrive are left out and marked as incomplete
+    List<Recommendation> recommendations = arrivedRecommendations.orElse(null);
+    List<Review> reviews = arrivedReviews.orElse(null);
+
+    List<String> incompleteSections = new ArrayList<>();
+    if (recommendations == null) {
+      incompleteSections.add(ProductAggregate.RECOMMENDATIONS_SECTION);
+    }
+    if (reviews == null) {
+      incompleteSections.add(ProductAggregate.REVIEWS_SECTION);
+    }
+
     int productId = product.getProductId();;
     String name = product.getName();
     int weight = product.getWeight();
@@ -134,7 +517,57 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
     ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress, recommendationAddress);
 
-    return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, serviceAddresses);
+    return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, serviceAddresses, incompleteSections);
+
+  }
+
+  /**
+   * A page of a section of the aggregate, or all of it. The next cursor is null on the last page.
+   */
+  private static class Page<T> {
+    private final List<T> items;
+    private final long totalCount;
+    private final Integer nextCursor;
+
+    Page(List<T> items, long totalCount, Integer nextCursor) {
+      this.items = items;
+      this.totalCount = totalCount;
+      this.nextCursor = nextCursor;
+    }
 
+    static <T> Page<T> empty() {
+      return new Page<>(List.of(), 0, null);
+    }
+
+    static <T> Page<T> whole(List<T> items) {
+      return new Page<>(items, items.size(), null);
+    }
+
+    /**
+     * Cuts the page after the cursor out of a list that is sorted on the ids.
+     */
+    static <T> Page<T> slice(List<T> sorted, ToIntFunction<T> id, int limit, Integer cursor) {
+      if (sorted == null) {
+        return null;
+      }
+
+      // Binary search for the first id after the cursor
+      int start = 0;
+      if (cursor != null) {
+        int end = sorted.size();
+        while (start < end) {
+          int middle = (start + end) >>> 1;
+          if (id.applyAsInt(sorted.get(middle)) <= cursor) {
+            start = middle + 1;
+          } else {
+            end = middle;
+          }
+        }
+      }
+      int end = Math.min(sorted.size(), start + limit);
+      Integer nextCursor = (end < sorted.size()) ? id.applyAsInt(sorted.get(end - 1)) : null;
+
+      return new Page<>(sorted.subList(start, end), sorted.size(), nextCursor);
+    }
   }
 }
@@ -0,0 +1,230 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.util.http.ServiceUtil;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Product aggregates materialized from the events on the products, recommendations and reviews destinations, so
+ * that they can be read with a single lookup instead of calling the core services.
+ *
+ * The events of the three destinations are not ordered in relation to each other, a product is found once its
+ * product event has been applied, whether its recommendations and reviews have arrived yet or not. The age of the
+ * last applied event is exposed per destination and partition as the product.read.model.last.event.age gauge. It is
+ * not the consumer lag, it does not grow while no events arrive and says nothing about the events still waiting.
+ * The lag is exposed by the Kafka client as kafka_consumer_fetch_manager_records_lag, there is none on RabbitMQ.
+ */
+@Component
+public class ProductReadModel {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductReadModel.class);
+
+  static final String LAST_EVENT_AGE_METRIC = "product.read.model.last.event.age";
+
+  private final MeterRegistry meterRegistry;
+  private final ServiceUtil serviceUtil;
+  private final boolean enabled;
+
+  private final Map<Integer, ProductEntry> entries = new ConcurrentHashMap<>();
+
+  // Milliseconds between the creation and the application of the last event, per destination and partition
+  private final Map<String, AtomicLong> lastEventAges = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ProductReadModel(
+      MeterRegistry meterRegistry,
+      ServiceUtil serviceUtil,
+      @Value("${app.read-model.enabled:false}") boolean enabled) {
+
+    this.meterRegistry = meterRegistry;
+    this.serviceUtil = serviceUtil;
+    this.enabled = enabled;
+
+    Gauge.builder("product.read.model.size", this.entries, Map::size).register(meterRegistry);
+    LOG.info("Created the product read model, enabled: {}", enabled);
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public Mono<ProductAggregate> get(int productId) {
+    return Mono.fromSupplier(() -> {
+      ProductAggregate aggregate = find(productId);
+      if (aggregate == null) {
+        throw new NotFoundException("No product found for productId: " + productId);
+      }
+      return aggregate;
+    });
+  }
+
+  /**
+   * Returns the aggregates of the products that are found, by productId.
+   */
+  public Map<Integer, ProductAggregate> getAll(List<Integer> productIds) {
+    Map<Integer, ProductAggregate> found = new HashMap<>();
+    productIds.forEach(productId -> {
+      ProductAggregate aggregate = find(productId);
+      if (aggregate != null) {
+        found.put(productId, aggregate);
+      }
+    });
+    return found;
+  }
+
+  public void applyProductEvent(Event<Integer, Product> event, String partition) {
+    if (event.getEventType() == Event.Type.CREATE_BATCH) {
+      throw new EventProcessingException("Unexpected CREATE_BATCH event on products, key: " + event.getKey());
+    }
+
+    apply("products", partition, event, entry -> {
+      if (event.getEventType() == Event.Type.CREATE) {
+        entry.product = event.getData();
+      } else {
+        entry.product = null;
+      }
+    });
+  }
+
+  public void applyRecommendationEvent(Event<Integer, Recommendation> event, String partition) {
+    apply("recommendations", partition, event, entry -> {
+      if (event.getEventType() == Event.Type.DELETE) {
+        entry.recommendations.clear();
+        return;
+      }
+      List<Recommendation> created = (event.getEventType() == Event.Type.CREATE) ? List.of(event.getData()) : event.getBatch();
+      created.forEach(r -> entry.recommendations.put(r.getRecommendationId(),
+          new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent())));
+    });
+  }
+
+  public void applyReviewEvent(Event<Integer, Review> event, String partition) {
+    apply("reviews", partition, event, entry -> {
+      if (event.getEventType() == Event.Type.DELETE) {
+        entry.reviews.clear();
+        return;
+      }
+      List<Review> created = (event.getEventType() == Event.Type.CREATE) ? List.of(event.getData()) : event.getBatch();
+      created.forEach(r -> entry.reviews.put(r.getReviewId(), new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent())));
+    });
+  }
+
+  private void apply(String destination, String partition, Event<Integer, ?> event, Consumer<ProductEntry> update) {
+    if (event.getEventType() == null || event.getKey() == null
+        || (event.getEventType() == Event.Type.CREATE && event.getData() == null)
+        || (event.getEventType() == Event.Type.CREATE_BATCH && event.getBatch() == null)) {
+      String errorMessage = "Incomplete event on " + destination + ", type: " + event.getEventType() + ", key: " + event.getKey();
+      LOG.warn(errorMessage);
+      throw new EventProcessingException(errorMessage);
+    }
+
+    LOG.debug("Applies {} event on {} for productId: {}", event.getEventType(), destination, event.getKey());
+
+    // All changes of an entry are made while ConcurrentHashMap holds its lock
+    this.entries.compute(event.getKey(), (productId, entry) -> {
+      ProductEntry updated = (entry == null) ? new ProductEntry() : entry;
+      update.accept(updated);
+      updated.aggregate = null;
+      return updated.isEmpty() ? null : updated;
+    });
+
+    recordLastEventAge(destination, partition, event.getEventCreatedAt());
+  }
+
+  private ProductAggregate find(int productId) {
+    ProductEntry entry = this.entries.get(productId);
+    if (entry == null) {
+      return null;
+    }
+
+    ProductAggregate aggregate = entry.aggregate;
+    if (aggregate != null) {
+      return aggregate;
+    }
+
+    // Built on the first read after a change rather than on every event, a product with many reviews would
+    // otherwise be rebuilt once per review while the read model catches up
+    ProductEntry materialized = this.entries.computeIfPresent(productId, (id, current) -> {
+      if (current.aggregate == null && current.product != null) {
+        current.aggregate = createProductAggregate(current);
+      }
+      return current;
+    });
+    return (materialized == null) ? null : materialized.aggregate;
+  }
+
+  private ProductAggregate createProductAggregate(ProductEntry entry) {
+    Product product = entry.product;
+
+    // The events carry no addresses of the core services, they were not involved in the read
+    ServiceAddresses serviceAddresses = new ServiceAddresses(this.serviceUtil.getServiceAddress(), "", "", "");
+
+    return new ProductAggregate(
+        product.getProductId(),
+        product.getName(),
+        product.getWeight(),
+        new ArrayList<>(entry.recommendations.values()),
+        new ArrayList<>(entry.reviews.values()),
+        serviceAddresses,
+        List.of());
+  }
+
+  private void recordLastEventAge(String destination, String partition, ZonedDateTime eventCreatedAt) {
+    if (eventCreatedAt == null) {
+      return;
+    }
+
+    AtomicLong age = this.lastEventAges.computeIfAbsent(destination + "/" + partition, key -> {
+      AtomicLong value = new AtomicLong();
+      Gauge.builder(LAST_EVENT_AGE_METRIC, value, AtomicLong::get)
+          .description("Time between the creation and the application of the last event read from the partition")
+          .baseUnit("milliseconds")
+          .tag("destination", destination)
+          .tag("partition", partition)
+          .register(this.meterRegistry);
+      return value;
+    });
+
+    age.set(Math.max(0, Duration.between(eventCreatedAt, ZonedDateTime.now()).toMillis()));
+  }
+
+  private static class ProductEntry {
+    private Product product;
+    private final Map<Integer, RecommendationSummary> recommendations = new TreeMap<>();
+    private final Map<Integer, ReviewSummary> reviews = new TreeMap<>();
+
+    // Reset on every change, built again on the next read
+    private volatile ProductAggregate aggregate;
+
+    boolean isEmpty() {
+      return this.product == null && this.recommendations.isEmpty() && this.reviews.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share one in-flight downstream call.
+ *
+ * The shared call is only cancelled when all of its subscribers have cancelled, and it is forgotten as
+ * soon as it terminates, so later callers always trigger a new call.
+ */
+public class RequestCoalescer<K> {
+
+  private final ConcurrentMap<K, Flux<?>> inFlight = new ConcurrentHashMap<>();
+  private final Counter coalescedCalls;
+
+  public RequestCoalescer(String serviceName, MeterRegistry meterRegistry) {
+    this.coalescedCalls = Counter.builder("composite.coalesced.calls")
+        .description("Number of downstream calls that joined an already in-flight call")
+        .tag("service", serviceName)
+        .register(meterRegistry);
+  }
+
+  public <T> Mono<T> coalesce(K key, Supplier<Mono<T>> call) {
+    return coalesceMany(key, () -> call.get().flux()).singleOrEmpty();
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> Flux<T> coalesceMany(K key, Supplier<Flux<T>> call) {
+    return Flux.defer(() -> {
+      AtomicBoolean created = new AtomicBoolean();
+      Flux<T> shared = (Flux<T>) this.inFlight.computeIfAbsent(key, k -> {
+        created.set(true);
+        return share(k, call.get());
+      });
+
+      if (!created.get()) {
+        this.coalescedCalls.increment();
+      }
+      return shared;
+    });
+  }
+
+  private <T> Flux<T> share(K key, Flux<T> call) {
+    AtomicReference<Flux<T>> self = new AtomicReference<>();
+
+    // replay() lets callers that join after the first elements have arrived still see all of them,
+    // refCount() keeps the call running until the last subscriber has cancelled.
+    Flux<T> shared = call
+        .doFinally(signal -> this.inFlight.remove(key, self.get()))
+        .replay()
+        .refCount();
+
+    self.set(shared);
+    return shared;
+  }
+}
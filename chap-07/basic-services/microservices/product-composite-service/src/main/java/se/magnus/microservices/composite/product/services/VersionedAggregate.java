@@ -0,0 +1,56 @@
+package se.magnus.microservices.composite.product.services;
+
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.util.http.ConditionalGet;
+
+/**
+ * A product aggregate with the ETags of the product, recommendations and reviews it was assembled from.
+ */
+public class VersionedAggregate {
+
+  private final ProductAggregate aggregate;
+  private final String productETag;
+  private final String recommendationsETag;
+  private final String reviewsETag;
+
+  public VersionedAggregate(ProductAggregate aggregate, String productETag, String recommendationsETag, String reviewsETag) {
+    this.aggregate = aggregate;
+    this.productETag = productETag;
+    this.recommendationsETag = recommendationsETag;
+    this.reviewsETag = reviewsETag;
+  }
+
+  public static VersionedAggregate unversioned(ProductAggregate aggregate) {
+    return new VersionedAggregate(aggregate, null, null, null);
+  }
+
+  public ProductAggregate getAggregate() {
+    return this.aggregate;
+  }
+
+  public String getProductETag() {
+    return this.productETag;
+  }
+
+  public String getRecommendationsETag() {
+    return this.recommendationsETag;
+  }
+
+  public String getReviewsETag() {
+    return this.reviewsETag;
+  }
+
+  /**
+   * Returns false if a part came without an ETag, the aggregate then can neither be revalidated nor given an ETag.
+   */
+  public boolean isVersioned() {
+    return this.productETag != null && this.recommendationsETag != null && this.reviewsETag != null;
+  }
+
+  /**
+   * The ETag of the aggregate, derived from the ETags of its parts, or null if it is not versioned.
+   */
+  public String getETag() {
+    return isVersioned() ? ConditionalGet.eTag(this.productETag, this.recommendationsETag, this.reviewsETag) : null;
+  }
+}
@@ -0,0 +1,107 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.AdaptiveConcurrencyLimiter;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AdaptiveConcurrencyLimiterTests {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    this.meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void callsOverTheLimitAreRejected() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", true, 2, 10, 2.0, this.meterRegistry);
+
+    Disposable first = limiter.limit(Mono::never).subscribe();
+    Disposable second = limiter.limit(Mono::never).subscribe();
+    assertEquals(2, limiter.getInFlight());
+
+    StepVerifier.create(limiter.limit(() -> Mono.just(1)))
+        .expectError(ServiceUnavailableException.class)
+        .verify();
+
+    assertEquals(1.0, this.meterRegistry.get("composite.concurrency.rejected").counter().count());
+
+    // Cancelled calls release their slots
+    first.dispose();
+    second.dispose();
+    assertEquals(0, limiter.getInFlight());
+
+    StepVerifier.create(limiter.limit(() -> Mono.just(1)))
+        .expectNext(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void limitGrowsWhileInUse() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", true, 2, 3, 2.0, this.meterRegistry);
+
+    StepVerifier.create(limiter.limit(() -> Mono.just(1))).expectNext(1).verifyComplete();
+    assertEquals(3.0, limiter.getLimit());
+
+    // Capped by the max limit
+    StepVerifier.create(limiter.limit(() -> Mono.just(1))).expectNext(1).verifyComplete();
+    assertEquals(3.0, limiter.getLimit());
+    assertEquals(3.0, this.meterRegistry.get("composite.concurrency.limit").gauge().value());
+  }
+
+  @Test
+  void limitShrinksOnSlowCallsAndServerErrors() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", true, 20, 200, 2.0, this.meterRegistry);
+
+    for (int i = 0; i < 10; i++) {
+      StepVerifier.create(limiter.limit(() -> Mono.just(1))).expectNext(1).verifyComplete();
+    }
+    double limitBeforeSlowCall = limiter.getLimit();
+
+    StepVerifier.create(limiter.limit(() -> Mono.just(1).delayElement(Duration.ofMillis(100))))
+        .expectNext(1)
+        .verifyComplete();
+    assertEquals(limitBeforeSlowCall * 0.9, limiter.getLimit(), 0.001);
+
+    double limitBeforeError = limiter.getLimit();
+    StepVerifier.create(limiter.limit(() -> Mono.error(new RuntimeException("Internal error"))))
+        .expectError(RuntimeException.class)
+        .verify();
+    assertEquals(limitBeforeError * 0.9, limiter.getLimit(), 0.001);
+  }
+
+  @Test
+  void clientErrorsDoNotShrinkTheLimit() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", true, 20, 200, 2.0, this.meterRegistry);
+
+    StepVerifier.create(limiter.limit(() -> Mono.error(new NotFoundException("Not found"))))
+        .expectError(NotFoundException.class)
+        .verify();
+
+    assertEquals(20.0, limiter.getLimit());
+  }
+
+  @Test
+  void disabledLimiterDoesNotLimit() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", false, 1, 1, 2.0, this.meterRegistry);
+
+    Disposable held = limiter.limit(Mono::never).subscribe();
+
+    StepVerifier.create(limiter.limit(() -> Mono.just(1)))
+        .expectNext(1)
+        .verifyComplete();
+
+    held.dispose();
+  }
+}
@@ -0,0 +1,109 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import se.magnus.util.http.Deadline;
+import se.magnus.util.http.DeadlineExchangeFilterFunction;
+import se.magnus.util.http.DeadlineWebFilter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+public class DeadlinePropagationTests {
+
+  private final AtomicReference<String> forwardedTimeout = new AtomicReference<>();
+  private final AtomicBoolean handled = new AtomicBoolean();
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+
+  private WebClient downstream;
+
+  @BeforeEach
+  void setUp() {
+    this.downstream = WebClient.builder()
+        .exchangeFunction(request -> {
+          this.forwardedTimeout.set(request.headers().getFirst(Deadline.HEADER));
+          return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        })
+        .filter(new DeadlineExchangeFilterFunction())
+        .build();
+  }
+
+  @Test
+  void deadlineIsForwardedToDownstreamCalls() {
+    client(Duration.ZERO).get().uri("/call").header(Deadline.HEADER, "1000").exchange()
+        .expectStatus().isOk();
+
+    long forwarded = Long.parseLong(this.forwardedTimeout.get());
+    assertTrue(forwarded > 0 && forwarded <= 1000, "Forwarded timeout: " + forwarded);
+  }
+
+  @Test
+  void defaultTimeoutIsUsedWithoutHeader() {
+    client(Duration.ofSeconds(2)).get().uri("/call").exchange()
+        .expectStatus().isOk();
+
+    long forwarded = Long.parseLong(this.forwardedTimeout.get());
+    assertTrue(forwarded > 1000 && forwarded <= 2000, "Forwarded timeout: " + forwarded);
+  }
+
+  @Test
+  void noDeadlineWithoutHeaderOrDefault() {
+    client(Duration.ZERO).get().uri("/call").exchange()
+        .expectStatus().isOk();
+
+    assertNull(this.forwardedTimeout.get());
+  }
+
+  @Test
+  void slowRequestIsCancelledWhenDeadlinePasses() {
+    client(Duration.ZERO).get().uri("/slow").header(Deadline.HEADER, "100").exchange()
+        .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+    assertTrue(this.cancelled.get());
+  }
+
+  @Test
+  void expiredRequestIsNotHandled() {
+    client(Duration.ZERO).get().uri("/call").header(Deadline.HEADER, "0").exchange()
+        .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+    assertFalse(this.handled.get());
+  }
+
+  @Test
+  void streamingRequestHasNoDeadline() {
+    client(Duration.ofMillis(100)).get().uri("/call").accept(MediaType.APPLICATION_NDJSON).exchange()
+        .expectStatus().isOk();
+
+    assertNull(this.forwardedTimeout.get());
+  }
+
+  private WebTestClient client(Duration defaultTimeout) {
+    return WebTestClient
+        .bindToRouterFunction(
+            route(GET("/call"), request -> {
+              this.handled.set(true);
+              return this.downstream.get().uri("http://downstream/").retrieve().toBodilessEntity()
+                  .then(ServerResponse.ok().build());
+            })
+            .andRoute(GET("/slow"), request -> Mono.delay(Duration.ofSeconds(5))
+                .doOnCancel(() -> this.cancelled.set(true))
+                .then(ServerResponse.ok().build())))
+        .webFilter(new DeadlineWebFilter(defaultTimeout))
+        .build();
+  }
+}
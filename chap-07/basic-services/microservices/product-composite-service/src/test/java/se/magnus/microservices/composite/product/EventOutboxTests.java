@@ -0,0 +1,94 @@
+package se.magnus.microservices.composite.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.microservices.composite.product.services.EventOutbox;
+import se.magnus.microservices.composite.product.services.EventPublisher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static se.magnus.api.event.Event.Type.CREATE;
+
+public class EventOutboxTests {
+
+  private static final String BINDING = "products-out-0";
+
+  private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writesCompleteWhileTheBrokerIsDown() throws IOException {
+    EventPublisher publisher = mock(EventPublisher.class);
+    when(publisher.publish(anyString(), any(), any())).thenReturn(Mono.error(new RuntimeException("Connection refused")));
+
+    EventOutbox outbox = outbox(publisher);
+    outbox.publish(BINDING, event(1)).block(Duration.ofSeconds(1));
+    outbox.publish(BINDING, event(2)).block(Duration.ofSeconds(1));
+
+    // The first event is retried, the second waits for it
+    verify(publisher, timeout(1000).atLeast(2)).publish(eq(BINDING), eq(1), any());
+    verify(publisher, never()).publish(eq(BINDING), eq(2), any());
+    outbox.shutdown();
+  }
+
+  @Test
+  void restartedOutboxRelaysWhatWasNotAcknowledged() throws IOException {
+    EventPublisher downPublisher = mock(EventPublisher.class);
+    when(downPublisher.publish(anyString(), any(), any())).thenReturn(Mono.never());
+
+    EventOutbox outbox = outbox(downPublisher);
+    outbox.publish(BINDING, event(1)).block(Duration.ofSeconds(1));
+    outbox.publish(BINDING, event(2)).block(Duration.ofSeconds(1));
+    outbox.shutdown();
+
+    EventPublisher publisher = mock(EventPublisher.class);
+    when(publisher.publish(anyString(), any(), any())).thenReturn(Mono.empty());
+    EventOutbox restarted = outbox(publisher);
+
+    verify(publisher, timeout(1000)).publish(eq(BINDING), eq(1), any());
+    verify(publisher, timeout(1000)).publish(eq(BINDING), eq(2), argThat(payload ->
+        readEvent((byte[]) payload).get("key").equals(2)));
+
+    // Both are acknowledged, nothing is relayed after the next restart
+    verify(publisher, after(200).times(2)).publish(anyString(), any(), any());
+    restarted.shutdown();
+    EventPublisher laterPublisher = mock(EventPublisher.class);
+    EventOutbox later = outbox(laterPublisher);
+    verify(laterPublisher, after(300).never()).publish(anyString(), any(), any());
+    later.shutdown();
+  }
+
+  private EventOutbox outbox(EventPublisher publisher) throws IOException {
+    return new EventOutbox(publisher, this.mapper, new SimpleMeterRegistry(), true, this.directory,
+        DataSize.ofKilobytes(64), 4, false, 10, Duration.ofMillis(100));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> readEvent(byte[] payload) {
+    try {
+      return this.mapper.readValue(payload, Map.class);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static Event<Integer, Product> event(int productId) {
+    return new Event<>(CREATE, productId, new Product(productId, "name", 1, null));
+  }
+}
@@ -0,0 +1,144 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.EventPublisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static se.magnus.api.event.Event.Type.CREATE;
+
+public class EventPublisherTests {
+
+  private static final String BINDING = "products-out-0";
+
+  private BiConsumer<String, Message<?>> sender;
+  private DirectChannel recordMetadataChannel;
+  private SimpleMeterRegistry meterRegistry;
+  private EventPublisher publisher;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    this.sender = mock(BiConsumer.class);
+    this.recordMetadataChannel = new DirectChannel();
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.publisher = new EventPublisher(this.sender, this.meterRegistry, this.recordMetadataChannel,
+        true, 2, Duration.ofMillis(500), 8);
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.publisher.shutdown();
+  }
+
+  @Test
+  void completesOnRabbitConfirm() {
+    Mono<Void> published = this.publisher.publish(BINDING, event(1)).cache();
+    published.subscribe();
+
+    CorrelationData correlation = (CorrelationData) sentMessages(1).get(0).getHeaders().get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION);
+    correlation.getFuture().set(new CorrelationData.Confirm(true, null));
+
+    StepVerifier.create(published).verifyComplete();
+    assertEquals(1, this.meterRegistry.get("composite.event.publish").tag("outcome", "ack").timer().count());
+  }
+
+  @Test
+  void failsOnRabbitNack() {
+    Mono<Void> published = this.publisher.publish(BINDING, event(1)).cache();
+    published.subscribe(null, error -> {});
+
+    CorrelationData correlation = (CorrelationData) sentMessages(1).get(0).getHeaders().get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION);
+    correlation.getFuture().set(new CorrelationData.Confirm(false, "queue full"));
+
+    StepVerifier.create(published).expectError(ServiceUnavailableException.class).verify();
+  }
+
+  @Test
+  void completesOnKafkaRecordMetadata() {
+    Mono<Void> published = this.publisher.publish(BINDING, event(1)).cache();
+    published.subscribe();
+
+    Message<?> sent = sentMessages(1).get(0);
+    this.recordMetadataChannel.send(MessageBuilder.withPayload(sent.getPayload()).copyHeaders(sent.getHeaders()).build());
+
+    StepVerifier.create(published).verifyComplete();
+  }
+
+  @Test
+  void failsWhenNotAckedInTime() {
+    StepVerifier.create(this.publisher.publish(BINDING, event(1)))
+        .expectError(ServiceUnavailableException.class)
+        .verify(Duration.ofSeconds(5));
+
+    assertEquals(1, this.meterRegistry.get("composite.event.publish").tag("outcome", "timeout").timer().count());
+    assertEquals(0.0, this.meterRegistry.get("composite.event.publish.in.flight").gauge().value());
+  }
+
+  @Test
+  void eventsOverTheWindowWaitForAnAck() {
+    this.publisher.publish(BINDING, event(1)).subscribe();
+    this.publisher.publish(BINDING, event(2)).subscribe();
+    Mono<Void> third = this.publisher.publish(BINDING, event(3)).cache();
+    third.subscribe();
+
+    // Two are sent at once, the third is queued rather than rejected
+    List<Message<?>> sent = sentMessages(2);
+    verify(this.sender, after(100).times(2)).accept(eq(BINDING), any(Message.class));
+
+    ((CorrelationData) sent.get(0).getHeaders().get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION))
+        .getFuture().set(new CorrelationData.Confirm(true, null));
+
+    CorrelationData thirdCorrelation = (CorrelationData) sentMessages(3).get(2).getHeaders().get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION);
+    assertEquals(3, ((Event<?, ?>) sentMessages(3).get(2).getPayload()).getKey());
+    thirdCorrelation.getFuture().set(new CorrelationData.Confirm(true, null));
+
+    StepVerifier.create(third).verifyComplete();
+  }
+
+  @Test
+  void failsAtOnceWhenTheQueueIsFull() {
+    // Two are in flight, at most one is taken by the publisher thread and eight wait in the queue
+    for (int productId = 1; productId <= 11; productId++) {
+      this.publisher.publish(BINDING, event(productId)).subscribe(null, error -> {});
+      if (productId == 2) {
+        sentMessages(2);
+      }
+    }
+
+    StepVerifier.create(this.publisher.publish(BINDING, event(12)))
+        .expectError(ServiceUnavailableException.class)
+        .verify(Duration.ofMillis(100));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Message<?>> sentMessages(int count) {
+    ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+    verify(this.sender, timeout(1000).times(count)).accept(eq(BINDING), captor.capture());
+    return captor.getAllValues();
+  }
+
+  private static Event<Integer, Product> event(int productId) {
+    return new Event<>(CREATE, productId, new Product(productId, "name", 1, null));
+  }
+}
@@ -0,0 +1,96 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import se.magnus.microservices.composite.product.services.HedgingPolicy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingPolicyTests {
+
+  private static final Duration DELAY = Duration.ofMillis(100);
+
+  private SimpleMeterRegistry meterRegistry;
+  private AtomicInteger calls;
+
+  @BeforeEach
+  void setUp() {
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.calls = new AtomicInteger();
+  }
+
+  @Test
+  void fastCallIsNotHedged() {
+    HedgingPolicy policy = new HedgingPolicy("test", true, DELAY, 100, this.meterRegistry);
+
+    StepVerifier.withVirtualTime(() -> policy.hedge(() -> call(Duration.ofMillis(50), 1)))
+        .thenAwait(Duration.ofMillis(50))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertEquals(1, this.calls.get());
+    assertEquals(0.0, fired());
+  }
+
+  @Test
+  void slowCallIsHedgedAndLoserCancelled() {
+    HedgingPolicy policy = new HedgingPolicy("test", true, DELAY, 100, this.meterRegistry);
+    AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+    StepVerifier.withVirtualTime(() -> policy.hedge(() -> this.calls.get() == 0
+            ? call(Duration.ofSeconds(10), 1).doOnCancel(() -> primaryCancelled.set(true))
+            : call(Duration.ofMillis(10), 2)))
+        .thenAwait(Duration.ofMillis(110))
+        .expectNext(2)
+        .verifyComplete();
+
+    assertEquals(2, this.calls.get());
+    assertTrue(primaryCancelled.get());
+    assertEquals(1.0, fired());
+    assertEquals(1.0, this.meterRegistry.get("composite.hedge.won").counter().count());
+  }
+
+  @Test
+  void noHedgeWhenBudgetIsExhausted() {
+    HedgingPolicy policy = new HedgingPolicy("test", true, DELAY, 10, this.meterRegistry);
+
+    StepVerifier.withVirtualTime(() -> policy.hedge(() -> call(Duration.ofSeconds(1), 1)))
+        .thenAwait(Duration.ofSeconds(1))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertEquals(1, this.calls.get());
+    assertEquals(0.0, fired());
+  }
+
+  @Test
+  void disabledPolicyDoesNotHedge() {
+    HedgingPolicy policy = new HedgingPolicy("test", false, DELAY, 100, this.meterRegistry);
+
+    StepVerifier.withVirtualTime(() -> policy.hedge(() -> call(Duration.ofSeconds(1), 1)))
+        .thenAwait(Duration.ofSeconds(1))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertEquals(1, this.calls.get());
+  }
+
+  private Flux<Integer> call(Duration latency, int value) {
+    return Flux.defer(() -> {
+      this.calls.incrementAndGet();
+      return Flux.just(value).delayElements(latency);
+    });
+  }
+
+  private double fired() {
+    return this.meterRegistry.get("composite.hedge.fired").counter().count();
+  }
+}
@@ -35,7 +35,8 @@ import static se.magnus.api.event.Event.Type.DELETE;
 import static se.magnus.microservices.composite.product.IsSameEvent.sameEventExceptCreatedAt;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
-  properties = {"spring.main.allow-bean-definition-overriding=true"})
+  properties = {"spring.main.allow-bean-definition-overriding=true", "app.event-publisher.await-confirms=false",
+    "app.outbox.enabled=false"})
 @Import({TestChannelBinderConfiguration.class})
 public class MessagingTests {
 
@@ -58,7 +59,7 @@ public class MessagingTests {
   @Test
   void createCompositeProduct1() {
 
-    ProductAggregate composite = new ProductAggregate(1, "name", 1, null, null, null);
+    ProductAggregate composite = new ProductAggregate(1, "name", 1, null, null, null, null);
     postAndVerifyProduct(composite, ACCEPTED);
 
     final List<String> productMessages = getMessages("products");
@@ -86,7 +87,7 @@ public class MessagingTests {
 
     ProductAggregate composite = new ProductAggregate(1, "name", 1,
         singletonList(new RecommendationSummary(1, "a", 1, "c")),
-        singletonList(new ReviewSummary(1, "a", "s", "c")), null);
+        singletonList(new ReviewSummary(1, "a", "s", "c")), null, null);
     postAndVerifyProduct(composite, ACCEPTED);
 
     final List<String> productMessages = getMessages("products");
@@ -100,21 +101,20 @@ public class MessagingTests {
         new Event(CREATE, composite.getProductId(), new Product(composite.getProductId(), composite.getName(), composite.getWeight(), null));
     assertThat(productMessages.get(0), is(sameEventExceptCreatedAt(expectedProductEvent)));
 
-    // Assert one create recommendation event queued up
+    // Assert one create recommendation batch event queued up
     assertEquals(1, recommendationMessages.size());
 
     RecommendationSummary rec = composite.getRecommendations().get(0);
-    Event<Integer, Product> expectedRecommendationEvent =
-        new Event(CREATE, composite.getProductId(),
-            new Recommendation(composite.getProductId(), rec.getRecommendationId(), rec.getAuthor(), rec.getRate(), rec.getContent(), null));
+    Event<Integer, Recommendation> expectedRecommendationEvent = Event.batch(composite.getProductId(), singletonList(
+        new Recommendation(composite.getProductId(), rec.getRecommendationId(), rec.getAuthor(), rec.getRate(), rec.getContent(), null)));
     assertThat(recommendationMessages.get(0), is(sameEventExceptCreatedAt(expectedRecommendationEvent)));
 
-    // Assert one create review event queued up
+    // Assert one create review batch event queued up
     assertEquals(1, reviewMessages.size());
 
     ReviewSummary rev = composite.getReviews().get(0);
-    Event<Integer, Product> expectedReviewEvent =
-        new Event(CREATE, composite.getProductId(), new Review(composite.getProductId(), rev.getReviewId(), rev.getAuthor(), rev.getSubject(), rev.getContent(), null));
+    Event<Integer, Review> expectedReviewEvent = Event.batch(composite.getProductId(), singletonList(
+        new Review(composite.getProductId(), rev.getReviewId(), rev.getAuthor(), rev.getSubject(), rev.getContent(), null)));
     assertThat(reviewMessages.get(0), is(sameEventExceptCreatedAt(expectedReviewEvent)));
   }
 
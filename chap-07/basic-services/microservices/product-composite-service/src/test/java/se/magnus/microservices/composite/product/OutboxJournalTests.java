@@ -0,0 +1,122 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.OutboxJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OutboxJournalTests {
+
+  private static final int SEGMENT_SIZE = 64;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void recordsAreReadInOrderFromAnOffset() throws IOException {
+    OutboxJournal journal = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    journal.append(bytes("first"));
+    journal.append(bytes("second"));
+    journal.append(bytes("third"));
+
+    List<OutboxJournal.Record> records = journal.read(journal.getAcknowledgedOffset(), 2);
+    assertEquals(List.of("first", "second"), bodies(records));
+    assertEquals(List.of("third"), bodies(journal.read(records.get(1).getNextOffset(), 10)));
+  }
+
+  @Test
+  void reopenedJournalResumesAfterTheAcknowledgedOffset() throws IOException {
+    OutboxJournal journal = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    journal.append(bytes("first"));
+    journal.append(bytes("second"));
+    journal.acknowledge(journal.read(journal.getAcknowledgedOffset(), 1).get(0).getNextOffset());
+    journal.close();
+
+    OutboxJournal reopened = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    assertEquals(List.of("second"), bodies(reopened.read(reopened.getAcknowledgedOffset(), 10)));
+
+    // Appends go on after the last record
+    reopened.append(bytes("third"));
+    assertEquals(List.of("second", "third"), bodies(reopened.read(reopened.getAcknowledgedOffset(), 10)));
+  }
+
+  @Test
+  void recordsRollOverToNewSegmentsAndAcknowledgedSegmentsAreDeleted() throws IOException {
+    OutboxJournal journal = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    for (int i = 0; i < 6; i++) {
+      journal.append(bytes("record number " + i));
+    }
+    assertEquals(3, segmentCount());
+
+    List<OutboxJournal.Record> records = journal.read(journal.getAcknowledgedOffset(), 10);
+    assertEquals(6, records.size());
+    assertEquals("record number 5", new String(records.get(5).getBody(), UTF_8));
+
+    journal.acknowledge(records.get(3).getNextOffset());
+    assertEquals(2, segmentCount());
+    assertEquals(List.of("record number 4", "record number 5"), bodies(journal.read(journal.getAcknowledgedOffset(), 10)));
+  }
+
+  @Test
+  void journalEndsBeforeATornRecord() throws IOException {
+    OutboxJournal journal = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    journal.append(bytes("complete"));
+    long tornOffset = journal.append(bytes("torn"));
+    journal.close();
+
+    // Corrupts the body of the last record, as if the service died while writing it
+    try (FileChannel channel = FileChannel.open(onlySegment(), WRITE)) {
+      channel.write(ByteBuffer.wrap(bytes("XX")), tornOffset + 8);
+    }
+
+    OutboxJournal reopened = new OutboxJournal(this.directory, SEGMENT_SIZE, 4, false);
+    assertEquals(List.of("complete"), bodies(reopened.read(reopened.getAcknowledgedOffset(), 10)));
+    assertEquals(tornOffset, reopened.append(bytes("next")));
+  }
+
+  @Test
+  void fullJournalRejectsAppends() throws IOException {
+    OutboxJournal journal = new OutboxJournal(this.directory, SEGMENT_SIZE, 2, false);
+    journal.append(bytes("record number 0"));
+    journal.append(bytes("record number 1"));
+    journal.append(bytes("record number 2"));
+    journal.append(bytes("record number 3"));
+
+    assertThrows(ServiceUnavailableException.class, () -> journal.append(bytes("record number 4")));
+    assertThrows(IllegalArgumentException.class, () -> journal.append(new byte[SEGMENT_SIZE]));
+  }
+
+  private long segmentCount() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.filter(file -> file.toString().endsWith(".segment")).count();
+    }
+  }
+
+  private Path onlySegment() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+    }
+  }
+
+  private static List<String> bodies(List<OutboxJournal.Record> records) {
+    return records.stream().map(record -> new String(record.getBody(), UTF_8)).collect(Collectors.toList());
+  }
+
+  private static byte[] bytes(String body) {
+    return body.getBytes(UTF_8);
+  }
+}
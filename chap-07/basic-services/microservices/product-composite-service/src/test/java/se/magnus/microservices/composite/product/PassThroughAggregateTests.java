@@ -0,0 +1,137 @@
+package se.magnus.microservices.composite.product;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.services.JsonArrayFilter;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.microservices.composite.product.services.ProductReadModel;
+import se.magnus.util.http.ServiceUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.disabledCache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class PassThroughAggregateTests {
+
+  private static final int PRODUCT_ID = 1;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private ProductCompositeIntegration integration;
+  private ProductCompositeServiceImpl service;
+
+  private List<Recommendation> recommendations;
+  private List<Review> reviews;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    ServiceUtil serviceUtil = mock(ServiceUtil.class);
+    when(serviceUtil.getServiceAddress()).thenReturn("composite-address");
+    this.service = service(serviceUtil, this.integration, disabledCache(), mock(ProductReadModel.class));
+
+    this.recommendations = IntStream.rangeClosed(1, 3)
+        .mapToObj(id -> new Recommendation(PRODUCT_ID, id, "author \"" + id + "\"", id, "content " + id, "recommendation-address"))
+        .collect(Collectors.toList());
+    this.reviews = IntStream.rangeClosed(1, 20)
+        .mapToObj(id -> new Review(PRODUCT_ID, id, "author " + id, "subject " + id, "content åäö " + id, "review-address"))
+        .collect(Collectors.toList());
+
+    when(this.integration.getProduct(PRODUCT_ID))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID, "name", 1, "product-address")));
+    when(this.integration.getProductEntity(PRODUCT_ID))
+        .thenReturn(Mono.just(ResponseEntity.ok(new Product(PRODUCT_ID, "name", 1, "product-address"))));
+    when(this.integration.getRecommendationsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok(this.recommendations)));
+    when(this.integration.getReviewsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok(this.reviews)));
+  }
+
+  @Test
+  void passThroughMatchesDeserializedAggregate() throws Exception {
+    when(this.integration.getRecommendationsAsJson(PRODUCT_ID)).thenReturn(chunked(toJson(this.recommendations), 7));
+    when(this.integration.getReviewsAsJson(PRODUCT_ID)).thenReturn(chunked(toJson(this.reviews), 13));
+
+    JsonNode expected = this.mapper.valueToTree(this.service.getProduct(PRODUCT_ID, null).block());
+    JsonNode passedThrough = this.mapper.readTree(join(this.service.getProductPassThrough(PRODUCT_ID)));
+
+    assertEquals(expected, passedThrough);
+  }
+
+  @Test
+  void failedSectionIsClosedAndMarkedIncomplete() throws Exception {
+    byte[] reviewJson = toJson(this.reviews);
+    byte[] truncated = new byte[reviewJson.length / 2];
+    System.arraycopy(reviewJson, 0, truncated, 0, truncated.length);
+
+    when(this.integration.getRecommendationsAsJson(PRODUCT_ID)).thenReturn(chunked(toJson(this.recommendations), 64));
+    when(this.integration.getReviewsAsJson(PRODUCT_ID))
+        .thenReturn(chunked(truncated, 64).concatWith(Flux.error(new RuntimeException("Connection reset"))));
+
+    JsonNode passedThrough = this.mapper.readTree(join(this.service.getProductPassThrough(PRODUCT_ID)));
+
+    assertEquals(3, passedThrough.get("recommendations").size());
+    assertEquals(this.mapper.valueToTree(List.of("reviews")), passedThrough.get("incompleteSections"));
+
+    // Only the reviews that were read completely are included
+    JsonNode partialReviews = passedThrough.get("reviews");
+    assertEquals(true, partialReviews.size() > 0 && partialReviews.size() < this.reviews.size());
+    assertEquals("subject 1", partialReviews.get(0).get("subject").asText());
+  }
+
+  @Test
+  void droppedFieldsAreSkippedAndFirstValueCaptured() {
+    JsonArrayFilter filter = new JsonArrayFilter(Set.of("productId", "extra"), "extra");
+
+    String json = "[{\"productId\":1,\"extra\":\"first\",\"id\":1},{\"extra\":{\"a\":[1,{\"b\":2}]},\"id\":2},{\"extra\":\"last\",\"id\":3}]";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte b : json.getBytes(StandardCharsets.UTF_8)) {
+      out.writeBytes(filter.filter(new byte[] {b}));
+    }
+    out.writeBytes(filter.finish());
+
+    assertEquals("[{\"id\":1},{\"id\":2},{\"id\":3}]", out.toString(StandardCharsets.UTF_8));
+    assertEquals("first", filter.getCapturedValue());
+    assertEquals(true, filter.isComplete());
+  }
+
+  private byte[] toJson(Object value) throws Exception {
+    return this.mapper.writeValueAsBytes(value);
+  }
+
+  private static Flux<DataBuffer> chunked(byte[] json, int chunkSize) {
+    List<DataBuffer> chunks = new ArrayList<>();
+    for (int start = 0; start < json.length; start += chunkSize) {
+      int end = Math.min(json.length, start + chunkSize);
+      byte[] chunk = new byte[end - start];
+      System.arraycopy(json, start, chunk, 0, chunk.length);
+      chunks.add(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+    }
+    return Flux.fromIterable(chunks);
+  }
+
+  private static String join(Flux<DataBuffer> buffers) {
+    DataBuffer joined = DataBufferUtils.join(buffers).block();
+    return joined.toString(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,122 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.VersionedAggregate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductAggregateCacheTests {
+
+  private SimpleMeterRegistry meterRegistry;
+  private ProductAggregateCache cache;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  void setUp() {
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.cache = new ProductAggregateCache(this.meterRegistry, true, 100, Duration.ofMinutes(1), Duration.ZERO);
+    this.loads = new AtomicInteger();
+  }
+
+  @Test
+  void servesSecondReadFromCache() {
+    assertEquals(1, this.cache.get(1, () -> load(1), this::failRevalidation).block().getAggregate().getProductId());
+    assertEquals(1, this.cache.get(1, () -> load(1), this::failRevalidation).block().getAggregate().getProductId());
+
+    assertEquals(1, this.loads.get());
+    assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+  }
+
+  @Test
+  void reloadsAfterInvalidation() {
+    this.cache.get(1, () -> load(1), this::failRevalidation).block();
+    this.cache.invalidate(1);
+    this.cache.get(1, () -> load(1), this::failRevalidation).block();
+
+    assertEquals(2, this.loads.get());
+  }
+
+  @Test
+  void dropsLoadThatRacedWithInvalidation() {
+    this.cache.get(1, () -> load(1).doOnNext(a -> this.cache.invalidate(1)), this::failRevalidation).block();
+    this.cache.get(1, () -> load(1), this::failRevalidation).block();
+
+    assertEquals(2, this.loads.get());
+  }
+
+  @Test
+  void keepsLoadWhenAnotherProductIsInvalidated() {
+    this.cache.get(1, () -> load(1).doOnNext(a -> this.cache.invalidate(2)), this::failRevalidation).block();
+    this.cache.get(1, () -> load(1), this::failRevalidation).block();
+
+    assertEquals(1, this.loads.get());
+  }
+
+  @Test
+  void bypassesCacheWhenDisabled() {
+    ProductAggregateCache disabled = new ProductAggregateCache(this.meterRegistry, false, 100, Duration.ofMinutes(1), Duration.ZERO);
+
+    disabled.get(1, () -> load(1), this::failRevalidation).block();
+    disabled.get(1, () -> load(1), this::failRevalidation).block();
+
+    assertEquals(2, this.loads.get());
+  }
+
+  @Test
+  void keepsStaleEntryThatIsNotModified() {
+    ProductAggregateCache revalidating = new ProductAggregateCache(this.meterRegistry, true, 100, Duration.ZERO, Duration.ofMinutes(1));
+
+    revalidating.get(1, () -> load(1), versioned -> Mono.just(true)).block();
+    VersionedAggregate revalidated = revalidating.get(1, () -> load(1), versioned -> Mono.just(false)).block();
+
+    assertEquals(1, this.loads.get());
+    assertEquals("W/\"product\"", revalidated.getProductETag());
+    assertEquals(1.0, this.meterRegistry.get("product.aggregate.cache.revalidations").tag("result", "not_modified").counter().count());
+
+    // Stale entries are only served after they have been revalidated
+    assertNull(revalidating.getIfPresent(1));
+  }
+
+  @Test
+  void reloadsStaleEntryThatIsModified() {
+    ProductAggregateCache revalidating = new ProductAggregateCache(this.meterRegistry, true, 100, Duration.ZERO, Duration.ofMinutes(1));
+
+    revalidating.get(1, () -> load(1), versioned -> Mono.just(true)).block();
+    revalidating.get(1, () -> load(1), versioned -> Mono.just(true)).block();
+
+    assertEquals(2, this.loads.get());
+    assertEquals(1.0, this.meterRegistry.get("product.aggregate.cache.revalidations").tag("result", "modified").counter().count());
+  }
+
+  @Test
+  void reloadsStaleEntryWithoutETags() {
+    ProductAggregateCache revalidating = new ProductAggregateCache(this.meterRegistry, true, 100, Duration.ZERO, Duration.ofMinutes(1));
+
+    revalidating.get(1, () -> load(1).map(versioned -> VersionedAggregate.unversioned(versioned.getAggregate())), this::failRevalidation).block();
+    revalidating.get(1, () -> load(1), this::failRevalidation).block();
+
+    assertEquals(2, this.loads.get());
+  }
+
+  private Mono<VersionedAggregate> load(int productId) {
+    return Mono.fromCallable(() -> {
+      this.loads.incrementAndGet();
+      return new VersionedAggregate(new ProductAggregate(productId, "name", 1, null, null, null, List.of()),
+          "W/\"product\"", "W/\"recommendations\"", "W/\"reviews\"");
+    });
+  }
+
+  private Mono<Boolean> failRevalidation(VersionedAggregate versioned) {
+    return Mono.error(new AssertionError("Unexpected revalidation"));
+  }
+}
@@ -0,0 +1,100 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.util.http.ConditionalGet;
+import se.magnus.util.http.ConditionalGetWebFilter;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.revalidatingCache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductCompositeConditionalGetTests {
+
+  private static final int PRODUCT_ID = 1;
+  private static final String PRODUCT_ETAG = "W/\"product\"";
+  private static final String RECOMMENDATIONS_ETAG = "W/\"recommendations\"";
+  private static final String REVIEWS_ETAG = "W/\"reviews\"";
+
+  private ProductCompositeIntegration integration;
+  private WebTestClient client;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    ProductCompositeServiceImpl service = service(this.integration, revalidatingCache());
+
+    this.client = WebTestClient.bindToController(service).webFilter(new ConditionalGetWebFilter()).build();
+
+    when(this.integration.getProductEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok().eTag(PRODUCT_ETAG)
+        .body(new Product(PRODUCT_ID, "name", 1, "mock-address"))));
+    when(this.integration.getRecommendationsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok().eTag(RECOMMENDATIONS_ETAG)
+        .body(List.of(new Recommendation(PRODUCT_ID, 1, "author", 1, "content", "mock-address")))));
+    when(this.integration.getReviewsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok().eTag(REVIEWS_ETAG)
+        .body(List.of(new Review(PRODUCT_ID, 1, "author", "subject", "content", "mock-address")))));
+  }
+
+  @Test
+  void aggregateETagIsDerivedFromTheParts() {
+    getAndVerifyProduct(null, HttpStatus.OK)
+        .expectHeader().valueEquals("ETag", ConditionalGet.eTag(PRODUCT_ETAG, RECOMMENDATIONS_ETAG, REVIEWS_ETAG))
+        .expectBody().jsonPath("$.name").isEqualTo("name");
+  }
+
+  @Test
+  void unmodifiedAggregateIsNotSentAgain() {
+    String eTag = ConditionalGet.eTag(PRODUCT_ETAG, RECOMMENDATIONS_ETAG, REVIEWS_ETAG);
+
+    getAndVerifyProduct(eTag, HttpStatus.NOT_MODIFIED)
+        .expectHeader().valueEquals("ETag", eTag)
+        .expectBody().isEmpty();
+  }
+
+  @Test
+  void staleAggregateIsRevalidatedWithTheCoreServices() {
+    when(this.integration.isProductModified(PRODUCT_ID, PRODUCT_ETAG)).thenReturn(Mono.just(false));
+    when(this.integration.isRecommendationsModified(PRODUCT_ID, RECOMMENDATIONS_ETAG)).thenReturn(Mono.just(false));
+    when(this.integration.isReviewsModified(PRODUCT_ID, REVIEWS_ETAG)).thenReturn(Mono.just(false));
+
+    // The cache has no time to live, every read after the first one is revalidated
+    getAndVerifyProduct(null, HttpStatus.OK);
+    getAndVerifyProduct(null, HttpStatus.OK);
+
+    verify(this.integration, times(1)).getProductEntity(PRODUCT_ID);
+    verify(this.integration, times(1)).isReviewsModified(PRODUCT_ID, REVIEWS_ETAG);
+
+    when(this.integration.isReviewsModified(PRODUCT_ID, REVIEWS_ETAG)).thenReturn(Mono.just(true));
+    getAndVerifyProduct(null, HttpStatus.OK);
+
+    verify(this.integration, times(2)).getProductEntity(PRODUCT_ID);
+  }
+
+  @Test
+  void noETagWithoutETagsOfAllParts() {
+    when(this.integration.getReviewsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok(List.of())));
+
+    getAndVerifyProduct("W/\"any\"", HttpStatus.OK)
+        .expectHeader().doesNotExist("ETag");
+  }
+
+  private WebTestClient.ResponseSpec getAndVerifyProduct(String ifNoneMatch, HttpStatus expectedStatus) {
+    WebTestClient.RequestHeadersSpec<?> request = this.client.get().uri("/product-composite/" + PRODUCT_ID);
+    if (ifNoneMatch != null) {
+      request = request.header("If-None-Match", ifNoneMatch);
+    }
+    WebTestClient.ResponseSpec response = request.exchange();
+    response.expectStatus().isEqualTo(expectedStatus);
+    return response;
+  }
+}
@@ -0,0 +1,102 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.cache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductCompositeFieldsTests {
+
+  private static final int PRODUCT_ID_OK = 1;
+
+  private ProductCompositeIntegration integration;
+  private ProductAggregateCache cache;
+  private ProductCompositeServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    this.cache = cache();
+    this.service = service(this.integration, this.cache);
+
+    when(this.integration.getProductEntity(PRODUCT_ID_OK))
+        .thenReturn(Mono.just(ResponseEntity.ok(new Product(PRODUCT_ID_OK, "name", 1, "mock-address"))));
+    when(this.integration.getProduct(PRODUCT_ID_OK, List.of("productId", "name", "weight")))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
+    when(this.integration.getProduct(PRODUCT_ID_OK, List.of("productId")))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID_OK, null, 0, "mock-address")));
+    when(this.integration.getRecommendationsEntity(PRODUCT_ID_OK))
+        .thenReturn(Mono.just(ResponseEntity.ok(List.of(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock-address")))));
+    when(this.integration.getReviewsEntity(PRODUCT_ID_OK))
+        .thenReturn(Mono.just(ResponseEntity.ok(List.of(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock-address")))));
+    when(this.integration.getReviews(PRODUCT_ID_OK, List.of("subject")))
+        .thenReturn(Flux.just(new Review(PRODUCT_ID_OK, 1, null, "subject", null, "mock-address")));
+  }
+
+  @Test
+  void onlyProductServiceIsCalledForProductFields() {
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID_OK, List.of("name", "weight")))
+        .expectNextMatches(aggregate -> aggregate.getName().equals("name")
+            && aggregate.getWeight() == 1
+            && aggregate.getRecommendations() == null
+            && aggregate.getReviews() == null
+            && aggregate.getServiceAddresses() == null)
+        .verifyComplete();
+
+    verify(this.integration, never()).getRecommendations(anyInt());
+    verify(this.integration, never()).getRecommendations(anyInt(), anyList());
+    verify(this.integration, never()).getReviews(anyInt());
+    verify(this.integration, never()).getReviews(anyInt(), anyList());
+  }
+
+  @Test
+  void listFieldsArePushedDown() {
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID_OK, List.of("reviews.subject")))
+        .expectNextMatches(aggregate -> aggregate.getName() == null
+            && aggregate.getRecommendations() == null
+            && aggregate.getReviews().size() == 1
+            && aggregate.getReviews().get(0).getSubject().equals("subject")
+            && aggregate.getReviews().get(0).getAuthor() == null)
+        .verifyComplete();
+
+    verify(this.integration).getReviews(PRODUCT_ID_OK, List.of("subject"));
+    verify(this.integration, never()).getRecommendations(anyInt());
+  }
+
+  @Test
+  void cachedAggregateIsTrimmed() {
+    this.service.getProduct(PRODUCT_ID_OK, null).block();
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID_OK, List.of("recommendations.author")))
+        .expectNextMatches(aggregate -> aggregate.getRecommendations().get(0).getAuthor().equals("author")
+            && aggregate.getRecommendations().get(0).getContent() == null
+            && aggregate.getReviews() == null)
+        .verifyComplete();
+
+    verify(this.integration, never()).getProduct(anyInt(), anyList());
+  }
+
+  @Test
+  void invalidField() {
+    assertThrows(InvalidInputException.class, () -> this.service.getProduct(PRODUCT_ID_OK, List.of("price")));
+    assertThrows(InvalidInputException.class, () -> this.service.getProduct(PRODUCT_ID_OK, List.of("reviews.rate")));
+  }
+}
@@ -0,0 +1,132 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.cache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductCompositeLatencyBudgetTests {
+
+  private static final int PRODUCT_ID = 1;
+  private static final Duration BUDGET = Duration.ofMillis(500);
+
+  private ProductCompositeIntegration integration;
+  private ProductAggregateCache cache;
+  private ProductCompositeServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    this.cache = cache();
+    this.service = service(this.integration, this.cache, BUDGET);
+
+    Recommendation recommendation = new Recommendation(PRODUCT_ID, 1, "author", 1, "content", "mock-address");
+    when(this.integration.getProductEntity(PRODUCT_ID))
+        .thenReturn(Mono.just(ResponseEntity.ok(new Product(PRODUCT_ID, "name", 1, "mock-address"))));
+    when(this.integration.getRecommendationsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok(List.of(recommendation))));
+    when(this.integration.getRecommendations(PRODUCT_ID)).thenReturn(Flux.just(recommendation));
+  }
+
+  @Test
+  void sectionsWithinBudgetAreComplete() {
+    when(this.integration.getReviewsEntity(PRODUCT_ID)).thenReturn(Mono.just(ResponseEntity.ok(List.of())));
+
+    StepVerifier.withVirtualTime(() -> this.service.getProduct(PRODUCT_ID, null))
+        .expectNextMatches(aggregate -> aggregate.getRecommendations().size() == 1
+            && aggregate.getReviews().isEmpty()
+            && aggregate.getIncompleteSections().isEmpty())
+        .verifyComplete();
+
+    assertNotNull(this.cache.getIfPresent(PRODUCT_ID));
+  }
+
+  @Test
+  void slowSectionIsMarkedIncompleteAndNotCached() {
+    when(this.integration.getReviewsEntity(PRODUCT_ID))
+        .thenReturn(Mono.just(ResponseEntity.ok(List.of(new Review(PRODUCT_ID, 1, "author", "subject", "content", "mock-address"))))
+            .delayElement(Duration.ofSeconds(5)));
+
+    StepVerifier.withVirtualTime(() -> this.service.getProduct(PRODUCT_ID, null))
+        .thenAwait(BUDGET)
+        .expectNextMatches(aggregate -> aggregate.getRecommendations().size() == 1
+            && aggregate.getReviews() == null
+            && aggregate.getIncompleteSections().equals(List.of("reviews")))
+        .verifyComplete();
+
+    assertNull(this.cache.getIfPresent(PRODUCT_ID));
+  }
+
+  @Test
+  void failedSectionIsMarkedIncompleteAndReadAgain() {
+    when(this.integration.getReviewsEntity(PRODUCT_ID))
+        .thenReturn(Mono.error(new ServiceUnavailableException("Review service is unavailable")))
+        .thenReturn(Mono.just(ResponseEntity.ok(List.of())));
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null))
+        .expectNextMatches(aggregate -> aggregate.getReviews() == null
+            && aggregate.getIncompleteSections().equals(List.of("reviews")))
+        .verifyComplete();
+    assertNull(this.cache.getIfPresent(PRODUCT_ID));
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null))
+        .expectNextMatches(aggregate -> aggregate.getReviews().isEmpty() && aggregate.getIncompleteSections().isEmpty())
+        .verifyComplete();
+    verify(this.integration, times(2)).getReviewsEntity(PRODUCT_ID);
+  }
+
+  @Test
+  void failedSectionOfBatchIsMarkedIncompleteAndReadAgain() {
+    when(this.integration.getProducts(List.of(PRODUCT_ID))).thenReturn(Flux.just(new Product(PRODUCT_ID, "name", 1, "mock-address")));
+    when(this.integration.getRecommendationsForProducts(List.of(PRODUCT_ID))).thenReturn(Flux.empty());
+    when(this.integration.getReviewsForProducts(List.of(PRODUCT_ID)))
+        .thenReturn(Flux.error(new ServiceUnavailableException("Review service is unavailable")))
+        .thenReturn(Flux.empty());
+
+    StepVerifier.create(this.service.getProducts(List.of(PRODUCT_ID)))
+        .expectNextMatches(batch -> batch.getProducts().get(0).getIncompleteSections().equals(List.of("reviews")))
+        .verifyComplete();
+
+    StepVerifier.create(this.service.getProducts(List.of(PRODUCT_ID)))
+        .expectNextMatches(batch -> batch.getProducts().get(0).getIncompleteSections().isEmpty())
+        .verifyComplete();
+    verify(this.integration, times(2)).getReviewsForProducts(List.of(PRODUCT_ID));
+  }
+
+  @Test
+  void incompleteSectionsOutsideSparseSelectionAreLeftOut() {
+    when(this.integration.getProduct(PRODUCT_ID, List.of("productId")))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID, null, 0, "mock-address")));
+    when(this.integration.getReviews(PRODUCT_ID)).thenReturn(Flux.never());
+
+    StepVerifier.withVirtualTime(() -> this.service.getProduct(PRODUCT_ID, List.of("recommendations", "reviews")))
+        .thenAwait(BUDGET)
+        .expectNextMatches(aggregate -> aggregate.getRecommendations().size() == 1
+            && aggregate.getIncompleteSections().equals(List.of("reviews")))
+        .verifyComplete();
+
+    StepVerifier.withVirtualTime(() -> this.service.getProduct(PRODUCT_ID, List.of("recommendations")))
+        .expectNextMatches(aggregate -> aggregate.getIncompleteSections().isEmpty())
+        .verifyComplete();
+  }
+}
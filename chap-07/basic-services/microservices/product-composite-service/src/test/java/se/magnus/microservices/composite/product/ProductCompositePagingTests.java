@@ -0,0 +1,128 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.microservices.composite.product.services.ProductReadModel;
+import se.magnus.util.http.ServiceUtil;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.cache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductCompositePagingTests {
+
+  private static final int PRODUCT_ID = 1;
+
+  private ProductCompositeIntegration integration;
+  private ProductAggregateCache cache;
+  private ProductCompositeServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    this.cache = cache();
+    this.service = service(this.integration, this.cache);
+
+    when(this.integration.getProduct(PRODUCT_ID))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID, "name", 1, "mock-address")));
+    when(this.integration.getRecommendations(PRODUCT_ID))
+        .thenReturn(Flux.just(new Recommendation(PRODUCT_ID, 1, "author", 1, "content", "mock-address")));
+  }
+
+  @Test
+  void pageOfReviewsIsAskedForAndCountsReturned() {
+    when(this.integration.getReviewPage(PRODUCT_ID, 2, 10))
+        .thenReturn(Mono.just(new ReviewPage(List.of(review(11), review(12)), 50, 12)));
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null, null, null, 2, 10))
+        .expectNextMatches(aggregate -> aggregate.getReviews().size() == 2
+            && aggregate.getReviewCount() == 50
+            && aggregate.getNextReviewCursor() == 12
+            && aggregate.getRecommendations().size() == 1
+            && aggregate.getRecommendationCount() == null
+            && aggregate.getIncompleteSections().isEmpty())
+        .verifyComplete();
+
+    // Pages are never read whole from the review service, nor cached
+    verify(this.integration, never()).getReviews(anyInt());
+    assertNull(this.cache.getIfPresent(PRODUCT_ID));
+  }
+
+  @Test
+  void failedPageIsMarkedIncomplete() {
+    when(this.integration.getReviewPage(PRODUCT_ID, 2, null)).thenReturn(Mono.error(new RuntimeException("Connection reset")));
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null, null, null, 2, null))
+        .expectNextMatches(aggregate -> aggregate.getReviews() == null
+            && aggregate.getReviewCount() == null
+            && aggregate.getIncompleteSections().equals(List.of("reviews")))
+        .verifyComplete();
+  }
+
+  @Test
+  void unselectedSectionIsNotPaged() {
+    when(this.integration.getProduct(PRODUCT_ID, List.of("productId", "name")))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID, "name", 0, "mock-address")));
+
+    ProductAggregate aggregate = this.service.getProduct(PRODUCT_ID, List.of("name", "recommendations"), null, null, 2, null).block();
+
+    assertNull(aggregate.getReviews());
+    assertNull(aggregate.getReviewCount());
+    verify(this.integration, never()).getReviewPage(anyInt(), anyInt(), any());
+  }
+
+  @Test
+  void cursorWithoutLimitIsRejected() {
+    assertThrows(InvalidInputException.class, () -> this.service.getProduct(PRODUCT_ID, null, null, null, null, 10));
+    assertThrows(InvalidInputException.class, () -> this.service.getProduct(PRODUCT_ID, null, 0, null, null, null));
+  }
+
+  @Test
+  void pagesAreCutFromTheReadModel() {
+    ServiceUtil serviceUtil = mock(ServiceUtil.class);
+    ProductReadModel readModel = new ProductReadModel(new SimpleMeterRegistry(), serviceUtil, true);
+    ProductCompositeServiceImpl readModelService = service(serviceUtil, this.integration, this.cache, readModel);
+
+    readModel.applyProductEvent(new Event<>(Event.Type.CREATE, PRODUCT_ID, new Product(PRODUCT_ID, "name", 1, null)), "0");
+    for (int reviewId = 5; reviewId >= 1; reviewId--) {
+      readModel.applyReviewEvent(new Event<>(Event.Type.CREATE, PRODUCT_ID, review(reviewId)), "0");
+    }
+
+    ProductAggregate firstPage = readModelService.getProduct(PRODUCT_ID, null, null, null, 2, null).block();
+    assertEquals(List.of(1, 2), reviewIds(firstPage));
+    assertEquals(5, firstPage.getReviewCount());
+
+    ProductAggregate lastPage = readModelService.getProduct(PRODUCT_ID, null, null, null, 2, 4).block();
+    assertEquals(List.of(5), reviewIds(lastPage));
+    assertNull(lastPage.getNextReviewCursor());
+  }
+
+  private static List<Integer> reviewIds(ProductAggregate aggregate) {
+    return aggregate.getReviews().stream().map(review -> review.getReviewId()).collect(Collectors.toList());
+  }
+
+  private static Review review(int reviewId) {
+    return new Review(PRODUCT_ID, reviewId, "author", "subject", "content", "mock-address");
+  }
+}
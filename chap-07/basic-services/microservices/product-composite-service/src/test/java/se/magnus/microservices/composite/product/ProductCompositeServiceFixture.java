@@ -0,0 +1,67 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.microservices.composite.product.services.ProductReadModel;
+import se.magnus.util.http.ServiceUtil;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Creates the service and its cache for the tests that call ProductCompositeServiceImpl directly, with a mocked
+ * ProductCompositeIntegration, so that they are wired up in one place.
+ */
+final class ProductCompositeServiceFixture {
+
+  static final int MAX_BATCH_SIZE = 100;
+
+  private ProductCompositeServiceFixture() {}
+
+  /**
+   * Aggregates are fresh for a minute and never revalidated.
+   */
+  static ProductAggregateCache cache() {
+    return new ProductAggregateCache(new SimpleMeterRegistry(), true, 10, Duration.ofMinutes(1), Duration.ZERO);
+  }
+
+  /**
+   * Aggregates are stale at once and revalidated with conditional GETs for a minute.
+   */
+  static ProductAggregateCache revalidatingCache() {
+    return new ProductAggregateCache(new SimpleMeterRegistry(), true, 10, Duration.ZERO, Duration.ofMinutes(1));
+  }
+
+  static ProductAggregateCache disabledCache() {
+    return new ProductAggregateCache(new SimpleMeterRegistry(), false, 1, Duration.ofMinutes(1), Duration.ZERO);
+  }
+
+  static ProductCompositeServiceImpl service(ProductCompositeIntegration integration, ProductAggregateCache cache) {
+    return service(integration, cache, Duration.ZERO);
+  }
+
+  static ProductCompositeServiceImpl service(
+      ProductCompositeIntegration integration, ProductAggregateCache cache, Duration latencyBudget) {
+
+    return service(mock(ServiceUtil.class), integration, cache, mock(ProductReadModel.class), latencyBudget);
+  }
+
+  static ProductCompositeServiceImpl service(
+      ServiceUtil serviceUtil, ProductCompositeIntegration integration, ProductAggregateCache cache, ProductReadModel readModel) {
+
+    return service(serviceUtil, integration, cache, readModel, Duration.ZERO);
+  }
+
+  static ProductCompositeServiceImpl service(
+      ServiceUtil serviceUtil,
+      ProductCompositeIntegration integration,
+      ProductAggregateCache cache,
+      ProductReadModel readModel,
+      Duration latencyBudget) {
+
+    return new ProductCompositeServiceImpl(serviceUtil, integration, cache, readModel, MAX_BATCH_SIZE, latencyBudget);
+  }
+}
@@ -0,0 +1,64 @@
+package se.magnus.microservices.composite.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.composite.product.ProductAggregateSection.Type.*;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.disabledCache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductCompositeStreamTests {
+
+  private static final int PRODUCT_ID_OK = 1;
+  private static final int PRODUCT_ID_NOT_FOUND = 2;
+
+  private ProductCompositeIntegration integration;
+  private ProductCompositeServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    this.integration = mock(ProductCompositeIntegration.class);
+    this.service = service(this.integration, disabledCache());
+  }
+
+  @Test
+  void productHeaderIsEmittedFirst() {
+    when(this.integration.getProduct(PRODUCT_ID_OK))
+        .thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")).delayElement(Duration.ofMillis(100)));
+    when(this.integration.streamRecommendations(PRODUCT_ID_OK))
+        .thenReturn(Flux.just(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock-address")));
+    when(this.integration.streamReviews(PRODUCT_ID_OK))
+        .thenReturn(Flux.just(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock-address")));
+
+    StepVerifier.create(this.service.getProductStream(PRODUCT_ID_OK))
+        .expectNextMatches(section -> section.getType() == PRODUCT && section.getProduct().getProductId() == PRODUCT_ID_OK)
+        .expectNextMatches(section -> section.getType() == RECOMMENDATION || section.getType() == REVIEW)
+        .expectNextMatches(section -> section.getType() == RECOMMENDATION || section.getType() == REVIEW)
+        .verifyComplete();
+  }
+
+  @Test
+  void productNotFound() {
+    when(this.integration.getProduct(PRODUCT_ID_NOT_FOUND))
+        .thenReturn(Mono.error(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)));
+    when(this.integration.streamRecommendations(PRODUCT_ID_NOT_FOUND)).thenReturn(Flux.empty());
+    when(this.integration.streamReviews(PRODUCT_ID_NOT_FOUND)).thenReturn(Flux.empty());
+
+    StepVerifier.create(this.service.getProductStream(PRODUCT_ID_NOT_FOUND))
+        .expectError(NotFoundException.class)
+        .verify();
+  }
+}
@@ -0,0 +1,133 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.microservices.composite.product.services.ProductReadModel;
+import se.magnus.util.http.ServiceUtil;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.api.event.Event.Type.DELETE;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.cache;
+import static se.magnus.microservices.composite.product.ProductCompositeServiceFixture.service;
+
+public class ProductReadModelTests {
+
+  private static final int PRODUCT_ID = 1;
+
+  private SimpleMeterRegistry meterRegistry;
+  private ProductReadModel readModel;
+  private ProductCompositeIntegration integration;
+  private ProductCompositeServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    this.meterRegistry = new SimpleMeterRegistry();
+    ServiceUtil serviceUtil = mock(ServiceUtil.class);
+    when(serviceUtil.getServiceAddress()).thenReturn("composite-address");
+    this.readModel = new ProductReadModel(this.meterRegistry, serviceUtil, true);
+
+    this.integration = mock(ProductCompositeIntegration.class);
+    this.service = service(serviceUtil, this.integration, cache(), this.readModel);
+  }
+
+  @Test
+  void aggregateIsMaterializedFromEventsInAnyOrder() {
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(2)), "1");
+    this.readModel.applyRecommendationEvent(new Event<>(CREATE, PRODUCT_ID, recommendation(1)), "0");
+
+    // Not found until the product itself has arrived
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null))
+        .expectError(NotFoundException.class)
+        .verify();
+
+    this.readModel.applyProductEvent(new Event<>(CREATE, PRODUCT_ID, new Product(PRODUCT_ID, "name", 1, null)), "0");
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(1)), "1");
+
+    ProductAggregate aggregate = this.service.getProduct(PRODUCT_ID, null).block();
+    assertEquals("name", aggregate.getName());
+    assertEquals(1, aggregate.getRecommendations().size());
+    assertEquals(List.of(1, 2), List.of(aggregate.getReviews().get(0).getReviewId(), aggregate.getReviews().get(1).getReviewId()));
+    assertEquals("composite-address", aggregate.getServiceAddresses().getCmp());
+
+    verifyNoInteractions(this.integration);
+  }
+
+  @Test
+  void sparseFieldsetsAndBatchesAreServedFromTheReadModel() {
+    this.readModel.applyProductEvent(new Event<>(CREATE, PRODUCT_ID, new Product(PRODUCT_ID, "name", 1, null)), "0");
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(1)), "0");
+
+    ProductAggregate sparse = this.service.getProduct(PRODUCT_ID, List.of("reviews.subject")).block();
+    assertNull(sparse.getName());
+    assertEquals("subject 1", sparse.getReviews().get(0).getSubject());
+
+    assertEquals(List.of(2), this.service.getProducts(List.of(PRODUCT_ID, 2)).block().getNotFoundProductIds());
+
+    verifyNoInteractions(this.integration);
+  }
+
+  @Test
+  void batchEventsAreAppliedAsOneUpdate() {
+    this.readModel.applyProductEvent(new Event<>(CREATE, PRODUCT_ID, new Product(PRODUCT_ID, "name", 1, null)), "0");
+    this.readModel.applyRecommendationEvent(Event.batch(PRODUCT_ID, List.of(recommendation(2), recommendation(1))), "0");
+    this.readModel.applyReviewEvent(Event.batch(PRODUCT_ID, List.of(review(1), review(2), review(3))), "0");
+
+    ProductAggregate aggregate = this.service.getProduct(PRODUCT_ID, null).block();
+    assertEquals(1, aggregate.getRecommendations().get(0).getRecommendationId());
+    assertEquals(2, aggregate.getRecommendations().size());
+    assertEquals(3, aggregate.getReviews().size());
+
+    assertThrows(EventProcessingException.class, () -> this.readModel.applyReviewEvent(Event.batch(PRODUCT_ID, null), "0"));
+  }
+
+  @Test
+  void deletedProductIsNotFound() {
+    this.readModel.applyProductEvent(new Event<>(CREATE, PRODUCT_ID, new Product(PRODUCT_ID, "name", 1, null)), "0");
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(1)), "0");
+    this.service.getProduct(PRODUCT_ID, null).block();
+
+    this.readModel.applyProductEvent(new Event<>(DELETE, PRODUCT_ID, null), "0");
+    this.readModel.applyReviewEvent(new Event<>(DELETE, PRODUCT_ID, null), "0");
+
+    StepVerifier.create(this.service.getProduct(PRODUCT_ID, null))
+        .expectError(NotFoundException.class)
+        .verify();
+    assertEquals(0.0, this.meterRegistry.get("product.read.model.size").gauge().value());
+  }
+
+  @Test
+  void lastEventAgeIsExposedPerPartition() {
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(1)), "0");
+    this.readModel.applyReviewEvent(new Event<>(CREATE, PRODUCT_ID, review(2)), "1");
+
+    assertEquals(2, this.meterRegistry.get("product.read.model.last.event.age").tag("destination", "reviews").gauges().size());
+    assertEquals(true, this.meterRegistry.get("product.read.model.last.event.age").tag("partition", "1").gauge().value() >= 0);
+  }
+
+  private static Recommendation recommendation(int recommendationId) {
+    return new Recommendation(PRODUCT_ID, recommendationId, "author", 1, "content", null);
+  }
+
+  private static Review review(int reviewId) {
+    return new Review(PRODUCT_ID, reviewId, "author", "subject " + reviewId, "content", null);
+  }
+}
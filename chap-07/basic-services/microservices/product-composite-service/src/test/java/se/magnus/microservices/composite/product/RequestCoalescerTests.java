@@ -0,0 +1,124 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import se.magnus.microservices.composite.product.services.RequestCoalescer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTests {
+
+  private SimpleMeterRegistry meterRegistry;
+  private RequestCoalescer<Integer> coalescer;
+  private AtomicInteger calls;
+
+  @BeforeEach
+  void setUp() {
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.coalescer = new RequestCoalescer<>("test", this.meterRegistry);
+    this.calls = new AtomicInteger();
+  }
+
+  @Test
+  void concurrentCallersShareOneCall() {
+    Sinks.One<String> response = Sinks.one();
+
+    Mono<String> first = this.coalescer.coalesce(1, () -> call(response.asMono()));
+    Mono<String> second = this.coalescer.coalesce(1, () -> call(response.asMono()));
+
+    StepVerifier.create(Mono.zip(first, second))
+        .then(() -> response.tryEmitValue("value"))
+        .expectNextMatches(t -> t.getT1().equals("value") && t.getT2().equals("value"))
+        .verifyComplete();
+
+    assertEquals(1, this.calls.get());
+    assertEquals(1.0, this.meterRegistry.get("composite.coalesced.calls").counter().count());
+  }
+
+  @Test
+  void lateCallerSeesAllElements() {
+    Sinks.Many<Integer> response = Sinks.many().multicast().onBackpressureBuffer();
+    Flux<Integer> first = this.coalescer.coalesceMany(1, () -> call(response.asFlux()));
+
+    StepVerifier.create(first)
+        .then(() -> response.tryEmitNext(1))
+        .expectNext(1)
+        .then(() -> {
+          Flux<Integer> late = this.coalescer.coalesceMany(1, () -> call(response.asFlux()));
+          StepVerifier.create(late.collectList())
+              .then(() -> {
+                response.tryEmitNext(2);
+                response.tryEmitComplete();
+              })
+              .expectNext(List.of(1, 2))
+              .verifyComplete();
+        })
+        .expectNext(2)
+        .verifyComplete();
+
+    assertEquals(1, this.calls.get());
+  }
+
+  @Test
+  void cancellingOneCallerDoesNotCancelTheOthers() {
+    Sinks.One<String> response = Sinks.one();
+    AtomicBoolean upstreamCancelled = new AtomicBoolean();
+    Mono<String> upstream = response.asMono().doOnCancel(() -> upstreamCancelled.set(true));
+
+    Disposable cancelled = this.coalescer.coalesce(1, () -> call(upstream)).subscribe();
+    Mono<String> remaining = this.coalescer.coalesce(1, () -> call(upstream));
+
+    StepVerifier.create(remaining)
+        .then(cancelled::dispose)
+        .then(() -> assertFalse(upstreamCancelled.get()))
+        .then(() -> response.tryEmitValue("value"))
+        .expectNext("value")
+        .verifyComplete();
+  }
+
+  @Test
+  void cancellingAllCallersCancelsTheCall() {
+    AtomicBoolean upstreamCancelled = new AtomicBoolean();
+    Mono<String> upstream = Mono.<String>never().doOnCancel(() -> upstreamCancelled.set(true));
+
+    Disposable first = this.coalescer.coalesce(1, () -> call(upstream)).subscribe();
+    Disposable second = this.coalescer.coalesce(1, () -> call(upstream)).subscribe();
+
+    first.dispose();
+    assertFalse(upstreamCancelled.get());
+    second.dispose();
+    assertTrue(upstreamCancelled.get());
+  }
+
+  @Test
+  void completedCallIsNotReused() {
+    this.coalescer.coalesce(1, () -> call(Mono.just("first"))).block();
+    assertEquals("second", this.coalescer.coalesce(1, () -> call(Mono.just("second"))).block());
+
+    assertEquals(2, this.calls.get());
+  }
+
+  private <T> Mono<T> call(Mono<T> response) {
+    return Mono.defer(() -> {
+      this.calls.incrementAndGet();
+      return response;
+    });
+  }
+
+  private <T> Flux<T> call(Flux<T> response) {
+    return Flux.defer(() -> {
+      this.calls.incrementAndGet();
+      return response;
+    });
+  }
+}
@@ -0,0 +1,145 @@
+package se.magnus.microservices.composite.product.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.services.PassThroughAggregateWriter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the cost of assembling a product aggregate from the JSON responses of the core services, by binding
+ * them to objects, mapping them to summaries and serializing the aggregate, as getProduct does, and by splicing
+ * them into the response, as getProductPassThrough does.
+ *
+ * Not run by the build, run its main method from the test classpath. Add -prof gc to the JMH options to also
+ * compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassThroughAggregateBenchmark {
+
+  // The size of the buffers Netty typically reads a response into
+  private static final int CHUNK_SIZE = 8192;
+
+  @Param({"10", "1000", "10000"})
+  private int reviewCount;
+
+  private ObjectMapper mapper;
+  private Jackson2JsonDecoder decoder;
+
+  private Product product;
+  private byte[] recommendationJson;
+  private byte[] reviewJson;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    // Debug logging of every decoded element would otherwise dominate the measurements
+    LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+    this.mapper = Jackson2ObjectMapperBuilder.json().build();
+    this.decoder = new Jackson2JsonDecoder(this.mapper);
+    this.decoder.setMaxInMemorySize(-1);
+
+    this.product = new Product(1, "name", 1, "product-service/172.17.0.2:8080");
+
+    List<Recommendation> recommendations = IntStream.rangeClosed(1, 10)
+        .mapToObj(id -> new Recommendation(1, id, "Author " + id, id % 5, "Content of recommendation " + id,
+            "recommendation-service/172.17.0.4:8080"))
+        .collect(Collectors.toList());
+    List<Review> reviews = IntStream.rangeClosed(1, this.reviewCount)
+        .mapToObj(id -> new Review(1, id, "Author " + id, "Subject " + id,
+            "Content of review " + id + ", long enough to be representative of a short review text.",
+            "review-service/172.17.0.3:8080"))
+        .collect(Collectors.toList());
+
+    this.recommendationJson = this.mapper.writeValueAsBytes(recommendations);
+    this.reviewJson = this.mapper.writeValueAsBytes(reviews);
+  }
+
+  @Benchmark
+  public byte[] deserializeAndSerialize() throws Exception {
+    List<Recommendation> recommendations = decode(this.recommendationJson, Recommendation.class);
+    List<Review> reviews = decode(this.reviewJson, Review.class);
+
+    ProductAggregate aggregate = new ProductAggregate(
+        this.product.getProductId(),
+        this.product.getName(),
+        this.product.getWeight(),
+        recommendations.stream()
+            .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent()))
+            .collect(Collectors.toList()),
+        reviews.stream()
+            .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
+            .collect(Collectors.toList()),
+        new ServiceAddresses("composite", this.product.getServiceAddress(),
+            reviews.isEmpty() ? "" : reviews.get(0).getServiceAddress(),
+            recommendations.isEmpty() ? "" : recommendations.get(0).getServiceAddress()),
+        List.of());
+
+    return this.mapper.writeValueAsBytes(aggregate);
+  }
+
+  @Benchmark
+  public int passThrough() {
+    PassThroughAggregateWriter writer = new PassThroughAggregateWriter(DefaultDataBufferFactory.sharedInstance);
+
+    DataBuffer aggregate = DataBufferUtils.join(Flux.concat(
+        Mono.just(writer.writeHead(this.product)),
+        writer.writeRecommendations(chunked(this.recommendationJson)),
+        writer.writeReviews(chunked(this.reviewJson)),
+        Mono.fromSupplier(() -> writer.writeTail(this.product, "composite"))))
+        .block();
+
+    return aggregate.readableByteCount();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> List<T> decode(byte[] json, Class<T> type) {
+    return (List<T>) (List<?>) this.decoder
+        .decode(chunked(json), ResolvableType.forClass(type), MediaType.APPLICATION_JSON, null)
+        .collectList()
+        .block();
+  }
+
+  private static Flux<DataBuffer> chunked(byte[] json) {
+    List<DataBuffer> chunks = new ArrayList<>();
+    for (int start = 0; start < json.length; start += CHUNK_SIZE) {
+      chunks.add(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(json, start, Math.min(CHUNK_SIZE, json.length - start))));
+    }
+    return Flux.fromIterable(chunks);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PassThroughAggregateBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,89 @@
+package se.magnus.microservices.composite.product.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares publishing the reviews of a product as one CREATE event per review with one CREATE_BATCH event.
+ *
+ * Each operation builds the messages as the composite does in sendMessage, serializes them to JSON as the binder
+ * does, and deserializes them into events as the consumers do. The broker round trip per message, which the
+ * batch saves as well, is not part of the measurement.
+ *
+ * Not run by the build, run its main method from the test classpath. Message counts and sizes are printed when
+ * each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductEventBatchBenchmark {
+
+  private static final int PRODUCT_ID = 1;
+
+  @Param({"10", "100", "1000"})
+  private int reviewCount;
+
+  private ObjectMapper mapper;
+  private JavaType eventType;
+  private List<Review> reviews;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    this.mapper = Jackson2ObjectMapperBuilder.json().build();
+    this.eventType = this.mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Review.class);
+    this.reviews = IntStream.rangeClosed(1, this.reviewCount)
+        .mapToObj(reviewId -> new Review(PRODUCT_ID, reviewId, "Author " + reviewId, "Subject " + reviewId,
+            "Content of review " + reviewId + ", long enough to be representative of a short review text.", null))
+        .collect(Collectors.toList());
+
+    long perReviewBytes = 0;
+    for (Review review : this.reviews) {
+      perReviewBytes += this.mapper.writeValueAsBytes(new Event<>(Event.Type.CREATE, PRODUCT_ID, review)).length;
+    }
+    long batchBytes = this.mapper.writeValueAsBytes(Event.batch(PRODUCT_ID, this.reviews)).length;
+
+    System.out.printf("%n%d reviews: %d messages of %d bytes in total, or 1 message of %d bytes%n",
+        this.reviewCount, this.reviewCount, perReviewBytes, batchBytes);
+  }
+
+  @Benchmark
+  public void eventPerReview(Blackhole blackhole) throws Exception {
+    for (Review review : this.reviews) {
+      blackhole.consume(roundTrip(new Event<>(Event.Type.CREATE, PRODUCT_ID, review)));
+    }
+  }
+
+  @Benchmark
+  public Event<Integer, Review> batchEvent() throws Exception {
+    return roundTrip(Event.batch(PRODUCT_ID, this.reviews));
+  }
+
+  private Event<Integer, Review> roundTrip(Event<Integer, Review> event) throws Exception {
+    Message<byte[]> message = MessageBuilder.withPayload(this.mapper.writeValueAsBytes(event))
+        .setHeader("partitionKey", event.getKey())
+        .build();
+    return this.mapper.readValue(message.getPayload(), this.eventType);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ProductEventBatchBenchmark.class.getSimpleName()).build()).run();
+  }
+}
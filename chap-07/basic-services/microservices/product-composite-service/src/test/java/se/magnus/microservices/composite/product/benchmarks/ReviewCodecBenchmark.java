@@ -0,0 +1,104 @@
+package se.magnus.microservices.composite.product.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import se.magnus.api.core.review.Review;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares payload size and decode cost of a list of reviews encoded as JSON and as Smile, decoded the same way
+ * as the WebClient does in bodyToFlux(Review.class).
+ *
+ * Not run by the build, run its main method from the test classpath. Payload sizes are
+ * printed when each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewCodecBenchmark {
+
+  private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+  private static final ResolvableType REVIEW_TYPE = ResolvableType.forClass(Review.class);
+
+  @Param({"10", "100", "1000"})
+  private int reviewCount;
+
+  private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+  private Decoder<Object> jsonDecoder;
+  private Decoder<Object> smileDecoder;
+
+  private byte[] jsonPayload;
+  private byte[] smilePayload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    // Debug logging of every decoded element would otherwise dominate the measurements
+    LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+    ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+    ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+
+    Jackson2JsonDecoder json = new Jackson2JsonDecoder(jsonMapper);
+    json.setMaxInMemorySize(-1);
+    this.jsonDecoder = json;
+
+    Jackson2SmileDecoder smile = new Jackson2SmileDecoder(smileMapper);
+    smile.setMaxInMemorySize(-1);
+    this.smileDecoder = smile;
+
+    List<Review> reviews = IntStream.rangeClosed(1, this.reviewCount)
+        .mapToObj(reviewId -> new Review(1, reviewId, "Author " + reviewId, "Subject " + reviewId,
+            "Content of review " + reviewId + ", long enough to be representative of a short review text.",
+            "review-service/172.17.0.3:8080"))
+        .collect(Collectors.toList());
+
+    this.jsonPayload = jsonMapper.writeValueAsBytes(reviews);
+    this.smilePayload = smileMapper.writeValueAsBytes(reviews);
+
+    System.out.printf("%n%d reviews: JSON %d bytes, Smile %d bytes (%.0f%%)%n",
+        this.reviewCount, this.jsonPayload.length, this.smilePayload.length,
+        100.0 * this.smilePayload.length / this.jsonPayload.length);
+  }
+
+  @Benchmark
+  public List<Object> decodeJson() {
+    return decode(this.jsonDecoder, this.jsonPayload, MediaType.APPLICATION_JSON);
+  }
+
+  @Benchmark
+  public List<Object> decodeSmile() {
+    return decode(this.smileDecoder, this.smilePayload, SMILE);
+  }
+
+  private List<Object> decode(Decoder<Object> decoder, byte[] payload, MediaType mediaType) {
+    return decoder.decode(Flux.just(this.bufferFactory.wrap(payload)), REVIEW_TYPE, mediaType, null)
+        .collectList()
+        .block();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReviewCodecBenchmark.class.getSimpleName()).build()).run();
+  }
+}
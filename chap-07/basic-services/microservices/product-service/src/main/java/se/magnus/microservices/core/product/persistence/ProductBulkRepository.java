@@ -0,0 +1,16 @@
+package se.magnus.microservices.core.product.persistence;
+
+import com.mongodb.bulk.BulkWriteError;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ProductBulkRepository {
+
+  /**
+   * Applies the writes with one unordered bulk write, in any order. Returns the error of every write that failed,
+   * by its index in the list, e.g. of an insert with a duplicate productId. Fails if the bulk write as a whole fails.
+   */
+  Mono<Map<Integer, BulkWriteError>> bulkWrite(List<ProductWrite> writes);
+}
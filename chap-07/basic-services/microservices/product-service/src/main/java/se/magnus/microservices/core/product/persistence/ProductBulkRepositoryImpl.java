@@ -0,0 +1,56 @@
+package se.magnus.microservices.core.product.persistence;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
+
+public class ProductBulkRepositoryImpl implements ProductBulkRepository {
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  @Autowired
+  public ProductBulkRepositoryImpl(ReactiveMongoOperations mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public Mono<Map<Integer, BulkWriteError>> bulkWrite(List<ProductWrite> writes) {
+    if (writes.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+
+    List<WriteModel<Document>> models = writes.stream().map(this::toModel).collect(Collectors.toList());
+    return this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(ProductEntity.class))
+        .flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .map(result -> Map.<Integer, BulkWriteError>of())
+        .onErrorResume(MongoBulkWriteException.class, ex -> ex.getWriteErrors().isEmpty()
+            ? Mono.error(ex)
+            : Mono.just(ex.getWriteErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, error -> error))));
+  }
+
+  private WriteModel<Document> toModel(ProductWrite write) {
+    if (write.getEntity() == null) {
+      return new DeleteManyModel<>(eq("productId", write.getProductId()));
+    }
+
+    // Written as the template would save a new entity, with the first version
+    ProductEntity entity = write.getEntity();
+    entity.setVersion(0);
+    Document document = new Document();
+    this.mongoTemplate.getConverter().write(entity, document);
+    return new InsertOneModel<>(document);
+  }
+}
@@ -3,12 +3,17 @@ package se.magnus.microservices.core.product.persistence;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import static java.lang.String.format;
 
 @Document(collection = "products")
+// Listings are read in productId order. The first index serves them with the filters checked on its keys, the
+// second serves selective name prefixes, sorting only the matching products.
+@CompoundIndex(name = "prod-name-weight", def = "{'productId': 1, 'name': 1, 'weight': 1}")
+@CompoundIndex(name = "name-prod", def = "{'name': 1, 'productId': 1}")
 @Data
 public class ProductEntity {
 
@@ -24,6 +29,10 @@ public class ProductEntity {
   private String name;
   private int weight;
 
+  // Used when reading projections, fields that are not read keep their default values
+  public ProductEntity() {
+  }
+
   public ProductEntity(int productId, String name, int weight) {
     this.productId = productId;
     this.name = name;
@@ -0,0 +1,34 @@
+package se.magnus.microservices.core.product.persistence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Queries written against the template, so that they can be projected and bounded by the deadline of the request
+ * (maxTimeMS), if there is one in the Reactor context.
+ */
+public interface ProductProjectionRepository {
+
+  Mono<ProductEntity> findByProductId(int productId);
+
+  /**
+   * Only reads the given fields from the database, fields that are left out keep their default values.
+   */
+  Mono<ProductEntity> findByProductId(int productId, Collection<String> fields);
+
+  Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  /**
+   * Keyset page in productId order, starts after the cursor, or at the first product if it is null. Filters that
+   * are null are not applied, the name filter matches names that start with namePrefix. The products are read from
+   * the cursor in batches as they are requested, not all at once.
+   */
+  Flux<ProductEntity> findPage(Integer cursor, String namePrefix, Integer minWeight, Integer maxWeight, int limit);
+
+  /**
+   * Deletes the product with one deleteMany on the server, returns how many documents were deleted.
+   */
+  Mono<Long> deleteByProductId(int productId);
+}
@@ -0,0 +1,105 @@
+package se.magnus.microservices.core.product.persistence;
+
+import com.mongodb.client.result.DeleteResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import se.magnus.util.http.Deadline;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ProductProjectionRepositoryImpl implements ProductProjectionRepository {
+
+  // Products read per round trip when a page is streamed
+  private static final int PAGE_BATCH_SIZE = 500;
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  @Autowired
+  public ProductProjectionRepositoryImpl(ReactiveMongoOperations mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public Mono<ProductEntity> findByProductId(int productId) {
+    return Mono.deferContextual(context ->
+        this.mongoTemplate.findOne(withDeadline(Query.query(where("productId").is(productId)), context), ProductEntity.class));
+  }
+
+  @Override
+  public Mono<ProductEntity> findByProductId(int productId, Collection<String> fields) {
+    return Mono.deferContextual(context -> {
+      Query query = Query.query(where("productId").is(productId));
+      fields.forEach(field -> query.fields().include(field));
+
+      return this.mongoTemplate.findOne(withDeadline(query, context), ProductEntity.class);
+    });
+  }
+
+  @Override
+  public Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds) {
+    return Flux.deferContextual(context ->
+        this.mongoTemplate.find(withDeadline(Query.query(where("productId").in(productIds)), context), ProductEntity.class));
+  }
+
+  @Override
+  public Flux<ProductEntity> findPage(Integer cursor, String namePrefix, Integer minWeight, Integer maxWeight, int limit) {
+    return Flux.deferContextual(context -> {
+      Query query = new Query().with(Sort.by("productId")).limit(limit).cursorBatchSize(PAGE_BATCH_SIZE);
+      if (cursor != null) {
+        query.addCriteria(where("productId").gt(cursor));
+      }
+      if (namePrefix != null) {
+        // A range rather than a regex, so that the bounds on the name index are exact
+        Criteria name = where("name").gte(namePrefix);
+        String end = prefixEnd(namePrefix);
+        query.addCriteria(end != null ? name.lt(end) : name);
+      }
+      if (minWeight != null || maxWeight != null) {
+        Criteria weight = where("weight");
+        if (minWeight != null) {
+          weight.gte(minWeight);
+        }
+        if (maxWeight != null) {
+          weight.lte(maxWeight);
+        }
+        query.addCriteria(weight);
+      }
+
+      return this.mongoTemplate.find(withDeadline(query, context), ProductEntity.class);
+    });
+  }
+
+  @Override
+  public Mono<Long> deleteByProductId(int productId) {
+    return this.mongoTemplate.remove(Query.query(where("productId").is(productId)), ProductEntity.class)
+        .map(DeleteResult::getDeletedCount);
+  }
+
+  /**
+   * The first string after all strings that start with the prefix, or null if there is none.
+   */
+  private static String prefixEnd(String prefix) {
+    for (int i = prefix.length() - 1; i >= 0; i--) {
+      char c = prefix.charAt(i);
+      if (c != Character.MAX_VALUE) {
+        return prefix.substring(0, i) + (char) (c + 1);
+      }
+    }
+    return null;
+  }
+
+  private Query withDeadline(Query query, ContextView context) {
+    // The server aborts the query when the deadline passes, a max time of zero would mean no limit at all
+    Deadline.from(context).ifPresent(deadline -> query.maxTime(Duration.ofMillis(Math.max(1, deadline.remaining().toMillis()))));
+    return query;
+  }
+}
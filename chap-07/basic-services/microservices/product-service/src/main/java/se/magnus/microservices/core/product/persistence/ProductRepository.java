@@ -2,10 +2,8 @@ package se.magnus.microservices.core.product.persistence;
 
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
-import reactor.core.publisher.Mono;
 
 import java.util.Optional;
 
-public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
-  Mono<ProductEntity> findByProductId(int productId);
+public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String>, ProductProjectionRepository, ProductBulkRepository {
 }
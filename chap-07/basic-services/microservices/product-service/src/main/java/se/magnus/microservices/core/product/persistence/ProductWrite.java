@@ -0,0 +1,34 @@
+package se.magnus.microservices.core.product.persistence;
+
+/**
+ * One operation of a bulk write, either the insert of a product or the delete of a product by its productId.
+ */
+public class ProductWrite {
+
+  private final int productId;
+  private final ProductEntity entity;
+
+  private ProductWrite(int productId, ProductEntity entity) {
+    this.productId = productId;
+    this.entity = entity;
+  }
+
+  public static ProductWrite insert(ProductEntity entity) {
+    return new ProductWrite(entity.getProductId(), entity);
+  }
+
+  public static ProductWrite delete(int productId) {
+    return new ProductWrite(productId, null);
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  /**
+   * The product to insert, null for a delete.
+   */
+  public ProductEntity getEntity() {
+    return entity;
+  }
+}
@@ -0,0 +1,71 @@
+package se.magnus.microservices.core.product.services;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells when the server has accepted a change stream on a collection. The reactive driver only emits once a change
+ * arrives, so the aggregate commands that open change streams are followed on the command listener of the client.
+ */
+@Component
+public class ChangeStreamMonitor implements CommandListener, MongoClientSettingsBuilderCustomizer {
+
+  private final Map<Integer, String> opening = new ConcurrentHashMap<>();
+  private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+
+  @Override
+  public void customize(MongoClientSettings.Builder builder) {
+    builder.addCommandListener(this);
+  }
+
+  /**
+   * Runs the listener every time a change stream on the collection is opened, also when the driver resumes one.
+   */
+  public void onOpened(String collection, Runnable listener) {
+    this.listeners.computeIfAbsent(collection, key -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    if (!"aggregate".equals(event.getCommandName())) {
+      return;
+    }
+
+    BsonDocument command = event.getCommand();
+    BsonValue collection = command.get("aggregate");
+    BsonValue pipeline = command.get("pipeline");
+    if (collection != null && collection.isString() && pipeline != null && pipeline.isArray() && isChangeStream(pipeline.asArray())) {
+      this.opening.put(event.getRequestId(), collection.asString().getValue());
+    }
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    String collection = this.opening.remove(event.getRequestId());
+    if (collection != null) {
+      this.listeners.getOrDefault(collection, List.of()).forEach(Runnable::run);
+    }
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    this.opening.remove(event.getRequestId());
+  }
+
+  private static boolean isChangeStream(BsonArray pipeline) {
+    return !pipeline.isEmpty() && pipeline.get(0).isDocument() && pipeline.get(0).asDocument().containsKey("$changeStream");
+  }
+}
@@ -3,53 +3,109 @@ package se.magnus.microservices.core.product.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.util.messaging.ReactiveMessageProcessor;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Configuration
 public class MessageProcessorConfig {
 
   private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
 
+  static final String DEAD_LETTER_BINDING = "messageProcessorDlq-out-0";
+
   private final ProductService productService;
+  private final ProductBatchProcessor batchProcessor;
+  private final StreamBridge streamBridge;
+  private final ReactiveMessageProcessor<Event<Integer, Product>> reactiveProcessor;
 
   @Autowired
-  public MessageProcessorConfig(ProductService productService) {
+  public MessageProcessorConfig(
+      ProductService productService,
+      ProductBatchProcessor batchProcessor,
+      StreamBridge streamBridge,
+      @Value("${app.message-processor.concurrency:16}") int concurrency,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.maxAttempts:3}") int maxAttempts,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffInitialInterval:1000}") long backOffInitialInterval,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffMaxInterval:10000}") long backOffMaxInterval,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffMultiplier:2.0}") double backOffMultiplier) {
+
     this.productService = productService;
+    this.batchProcessor = batchProcessor;
+    this.streamBridge = streamBridge;
+    this.reactiveProcessor = new ReactiveMessageProcessor<>(Event::getKey, this::process,
+        ReactiveMessageProcessor.deadLetterTo(streamBridge, DEAD_LETTER_BINDING), concurrency, maxAttempts,
+        Duration.ofMillis(backOffInitialInterval), Duration.ofMillis(backOffMaxInterval), backOffMultiplier);
   }
 
+  /**
+   * Processes the events of different products concurrently, without blocking a thread per event.
+   */
   @Bean
-  public Consumer<Event<Integer, Product>> messageProcessor() {
-    return event -> {
-      LOG.info("Process message create at {}...", event.getEventCreatedAt());
-
-      switch(event.getEventType()) {
-        case CREATE:
-          Product product = event.getData();
-          LOG.info("Create product with ID: {}", product.getProductId());
-          this.productService.createProduct(product).block();
-          break;
-
-        case DELETE:
-          int productId = event.getKey();
-          LOG.info("Delete recommendations with ProductID: {}", productId);
-          this.productService.deleteProduct(productId).block();
-          break;
-
-        default:
-          String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-          LOG.warn(errorMessage);
-          throw new EventProcessingException(errorMessage);
-      }
-
-      LOG.info("Message processing done!");
-    };
+  public Function<Flux<Message<Event<Integer, Product>>>, Mono<Void>> messageProcessor() {
+    return this.reactiveProcessor::process;
+  }
+
+  private Mono<Void> process(Event<Integer, Product> event) {
+    LOG.info("Process message create at {}...", event.getEventCreatedAt());
+
+    Mono<Void> result;
+    switch(event.getEventType()) {
+      case CREATE:
+        Product product = event.getData();
+        LOG.info("Create product with ID: {}", product.getProductId());
+        result = this.productService.createProduct(product).then();
+        break;
+
+      case DELETE:
+        int productId = event.getKey();
+        LOG.info("Delete recommendations with ProductID: {}", productId);
+        result = this.productService.deleteProduct(productId);
+        break;
+
+      default:
+        String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+        LOG.warn(errorMessage);
+        return Mono.error(new EventProcessingException(errorMessage));
+    }
+
+    return result.doOnSuccess(done -> LOG.info("Message processing done!"));
   }
 
+  /**
+   * Used instead of messageProcessor by the streaming_batch profile, applies the events of a poll with bulk writes.
+   * Events that fail on their own are sent to the dead letter queue one by one, the rest of the batch is applied.
+   */
+  @Bean
+  public Consumer<List<Event<Integer, Product>>> batchMessageProcessor() {
+    return events -> {
+      LOG.info("Process a batch of {} messages...", events.size());
+
+      Map<Integer, String> failures = this.batchProcessor.process(events).block();
+      failures.forEach((index, errorMessage) -> {
+        LOG.warn("Sends the message to the dead letter queue: {}", errorMessage);
+        this.streamBridge.send(DEAD_LETTER_BINDING, MessageBuilder.withPayload(events.get(index))
+            .setHeader("x-exception-message", errorMessage)
+            .build());
+      });
+
+      LOG.info("Batch processing done, {} of {} messages failed", failures.size(), events.size());
+    };
+  }
 }
@@ -0,0 +1,123 @@
+package se.magnus.microservices.core.product.services;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.microservices.core.product.persistence.ProductWrite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+/**
+ * Applies a batch of product events with unordered bulk writes, instead of one round trip per event.
+ */
+@Component
+public class ProductBatchProcessor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductBatchProcessor.class);
+
+  private final ProductRepository repository;
+  private final ProductMapper mapper;
+
+  @Autowired
+  public ProductBatchProcessor(ProductRepository repository, ProductMapper mapper) {
+    this.repository = repository;
+    this.mapper = mapper;
+  }
+
+  /**
+   * Returns why each event that could not be applied failed, by its index in the list. Events of the same product
+   * are applied in the order of the list, by bulk writes of their own.
+   */
+  public Mono<Map<Integer, String>> process(List<Event<Integer, Product>> events) {
+    Map<Integer, String> failures = new TreeMap<>();
+    List<Chunk> chunks = new ArrayList<>();
+    Chunk chunk = new Chunk();
+
+    for (int index = 0; index < events.size(); index++) {
+      ProductWrite write;
+      try {
+        write = toWrite(events.get(index));
+      } catch (InvalidInputException | EventProcessingException ex) {
+        failures.put(index, ex.getMessage());
+        continue;
+      }
+
+      if (!chunk.add(index, write)) {
+        chunks.add(chunk);
+        chunk = new Chunk();
+        chunk.add(index, write);
+      }
+    }
+    chunks.add(chunk);
+
+    LOG.debug("Applies {} product events with {} bulk writes", events.size(), chunks.size());
+
+    return Flux.fromIterable(chunks)
+        .concatMap(bulk -> this.repository.bulkWrite(bulk.writes)
+            .doOnNext(errors -> errors.forEach((writeIndex, error) ->
+                failures.put(bulk.indexes.get(writeIndex), toMessage(bulk.writes.get(writeIndex), error)))))
+        .log(LOG.getName(), Level.FINE)
+        .then(Mono.fromCallable(() -> failures));
+  }
+
+  private ProductWrite toWrite(Event<Integer, Product> event) {
+    switch (event.getEventType()) {
+      case CREATE:
+        Product product = event.getData();
+        if (product == null || product.getProductId() < 1) {
+          throw new InvalidInputException("Invalid productId: " + (product == null ? null : product.getProductId()));
+        }
+        return ProductWrite.insert(this.mapper.apiToEntity(product));
+
+      case DELETE:
+        if (event.getKey() == null || event.getKey() < 1) {
+          throw new InvalidInputException("Invalid productId: " + event.getKey());
+        }
+        return ProductWrite.delete(event.getKey());
+
+      default:
+        throw new EventProcessingException("Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event");
+    }
+  }
+
+  private static String toMessage(ProductWrite write, BulkWriteError error) {
+    if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+      return "Duplicate key, Product Id: " + write.getProductId();
+    }
+    return error.getMessage();
+  }
+
+  /**
+   * Writes that can be applied in any order, at most one per product.
+   */
+  private static class Chunk {
+    private final List<Integer> indexes = new ArrayList<>();
+    private final List<ProductWrite> writes = new ArrayList<>();
+    private final Set<Integer> productIds = new HashSet<>();
+
+    boolean add(int index, ProductWrite write) {
+      if (!this.productIds.add(write.getProductId())) {
+        return false;
+      }
+      this.indexes.add(index);
+      this.writes.add(write);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package se.magnus.microservices.core.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.BsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, in-process near-cache of products, kept coherent across replicas by a change stream on the products
+ * collection. Changed products are updated in the cache and deleted ones evicted.
+ *
+ * Change streams need a replica set. The cache is bypassed until the server has accepted the change stream, and
+ * emptied and bypassed again while it is not running, it is then opened again with a backoff. The time to live bounds how stale an entry can get if a change is still missed.
+ */
+@Component
+public class ProductCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductCache.class);
+
+  static final String CACHE_NAME = "products";
+
+  // Changes from a bit before the change stream was opened are replayed, so that none is missed while it opens
+  private static final Duration REPLAY = Duration.ofSeconds(1);
+
+  private final boolean enabled;
+  private final Cache<Integer, ProductEntity> cache;
+  private final Counter changes;
+  private volatile boolean watching;
+
+  // Bumped on every change, used to detect loads that raced with a change.
+  private final AtomicLong changeCount = new AtomicLong();
+
+  private final Disposable changeStream;
+
+  @Autowired
+  public ProductCache(
+      ReactiveMongoOperations mongoTemplate,
+      ChangeStreamMonitor changeStreamMonitor,
+      MeterRegistry meterRegistry,
+      @Value("${app.product-cache.enabled:false}") boolean enabled,
+      @Value("${app.product-cache.max-size:10000}") long maxSize,
+      @Value("${app.product-cache.time-to-live:10m}") Duration timeToLive,
+      @Value("${app.product-cache.max-retry-backoff:1m}") Duration maxRetryBackoff) {
+
+    this.enabled = enabled;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(timeToLive)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    this.changes = meterRegistry.counter("product.cache.changes");
+    Gauge.builder("product.cache.watching", this, cache -> cache.watching ? 1 : 0)
+        .description("1 if the change stream is running and the cache is used, 0 if it is bypassed")
+        .register(meterRegistry);
+
+    if (enabled) {
+      changeStreamMonitor.onOpened(CACHE_NAME, () -> {
+        LOG.info("The change stream on {} is open, the product cache is used", CACHE_NAME);
+        this.watching = true;
+      });
+    }
+    this.changeStream = enabled ? watch(mongoTemplate, maxRetryBackoff) : null;
+    LOG.info("Created the product cache, enabled: {}, max size: {}, time to live: {}", enabled, maxSize, timeToLive);
+  }
+
+  /**
+   * Returns the cached product, or loads and caches it. Products that are not found are not cached.
+   */
+  public Mono<ProductEntity> get(int productId, Supplier<Mono<ProductEntity>> loader) {
+    if (!this.enabled || !this.watching) {
+      return loader.get();
+    }
+
+    ProductEntity cached = this.cache.getIfPresent(productId);
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+
+    return Mono.defer(() -> {
+      long changesBeforeLoad = this.changeCount.get();
+      return loader.get().doOnNext(entity -> {
+        // A change that arrived while loading may have been missed by the load, it is not cached then
+        if (this.watching && this.changeCount.get() == changesBeforeLoad) {
+          this.cache.put(productId, entity);
+        }
+      });
+    });
+  }
+
+  public void evict(int productId) {
+    this.changeCount.incrementAndGet();
+    this.cache.invalidate(productId);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (this.changeStream != null) {
+      this.changeStream.dispose();
+    }
+  }
+
+  private Disposable watch(ReactiveMongoOperations mongoTemplate, Duration maxRetryBackoff) {
+    return Flux.defer(() -> mongoTemplate.changeStream(CACHE_NAME,
+            ChangeStreamOptions.builder()
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .resumeAt(Instant.now().minus(REPLAY))
+                .build(),
+            ProductEntity.class)
+          // An invalidated change stream is closed, it is then opened again like after a failure
+          .concatWith(Flux.error(new IllegalStateException("The change stream was closed"))))
+        .doOnNext(this::apply)
+        .doOnError(ex -> {
+          LOG.warn("The product cache is bypassed, the change stream on {} failed: {}", CACHE_NAME, ex.toString());
+          this.watching = false;
+          this.changeCount.incrementAndGet();
+          this.cache.invalidateAll();
+        })
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(maxRetryBackoff))
+        .subscribe();
+  }
+
+  private void apply(ChangeStreamEvent<ProductEntity> event) {
+    this.changeCount.incrementAndGet();
+    this.changes.increment();
+
+    switch (event.getOperationType()) {
+      case INSERT:
+      case UPDATE:
+      case REPLACE:
+        ProductEntity entity = event.getBody();
+        if (entity != null) {
+          // Only products that are cached are updated, and never to an older version
+          this.cache.asMap().computeIfPresent(entity.getProductId(),
+              (productId, cached) -> isNewer(entity, cached) ? entity : cached);
+        } else {
+          // Deleted before its full document could be looked up
+          evictById(event.getRaw().getDocumentKey());
+        }
+        break;
+
+      case DELETE:
+        evictById(event.getRaw().getDocumentKey());
+        break;
+
+      default:
+        // The collection is dropped, renamed or the change stream is invalidated
+        LOG.info("Clears the product cache on a {} of {}", event.getOperationType(), CACHE_NAME);
+        this.cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Deletes only carry the _id, the cache is keyed by productId. Deletes are rare and the cache is bounded.
+   */
+  private void evictById(BsonDocument documentKey) {
+    String id = documentKey.getObjectId("_id").getValue().toHexString();
+    this.cache.asMap().values().removeIf(entity -> id.equals(entity.getId()));
+  }
+
+  private static boolean isNewer(ProductEntity entity, ProductEntity cached) {
+    return entity.getVersion() == null || cached.getVersion() == null || entity.getVersion() >= cached.getVersion();
+  }
+}
@@ -4,7 +4,9 @@ import com.mongodb.DuplicateKeyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
@@ -12,24 +14,40 @@ import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.microservices.core.product.persistence.ProductEntity;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.util.http.ConditionalGet;
 import se.magnus.util.http.ServiceUtil;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 @RestController
 public class ProductServiceImp implements ProductService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductServiceImp.class);
+  private static final Set<String> PROJECTABLE_FIELDS = Set.of("productId", "name", "weight");
   private final ServiceUtil serviceUtil;
   private final ProductRepository repository;
   private final ProductMapper mapper;
-
+  private final ProductCache cache;
+  private final int maxBatchSize;
+  private final int maxPageSize;
 
   @Autowired
-  public ProductServiceImp(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
+  public ProductServiceImp(
+      ProductRepository repository,
+      ProductMapper mapper,
+      ServiceUtil serviceUtil,
+      ProductCache cache,
+      @Value("${app.max-batch-size:100}") int maxBatchSize,
+      @Value("${app.max-page-size:10000}") int maxPageSize) {
     this.repository = repository;
     this.mapper = mapper;
     this.serviceUtil = serviceUtil;
+    this.cache = cache;
+    this.maxBatchSize = maxBatchSize;
+    this.maxPageSize = maxPageSize;
   }
 
   @Override
@@ -58,8 +76,74 @@ public class ProductServiceImp implements ProductService {
 
     LOG.info("Will get product info for id={}", productId);
 
-    return this.repository.findByProductId(productId)
+    return this.cache.get(productId, () -> this.repository.findByProductId(productId))
         .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
+        .log(LOG.getName(), Level.FINE)
+        // The ETag is derived from the version, callers that already have it get a 304 Not Modified
+        .flatMap(entity -> ConditionalGet.withETag(ConditionalGet.eTag(entity.getId(), entity.getVersion()), Mono.just(entity)))
+        .map(entity -> this.mapper.entityToApi(entity))
+        .map(product -> setServiceAddress(product));
+  }
+
+  @Override
+  public Mono<Product> getProduct(int productId, List<String> fields) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    fields.stream().filter(field -> !PROJECTABLE_FIELDS.contains(field)).findFirst().ifPresent(field -> {
+      throw new InvalidInputException("Invalid field: " + field);
+    });
+
+    Set<String> entityFields = new HashSet<>(fields);
+    entityFields.add("productId");
+
+    LOG.info("Will get product info for id={}, fields={}", productId, fields);
+
+    return this.repository.findByProductId(productId, entityFields)
+        .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
+        .log(LOG.getName(), Level.FINE)
+        .map(entity -> this.mapper.entityToApi(entity))
+        .map(product -> setServiceAddress(product));
+  }
+
+  @Override
+  public Flux<Product> getProducts(List<Integer> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      throw new InvalidInputException("No productIds specified");
+    }
+    if (productIds.size() > this.maxBatchSize) {
+      throw new InvalidInputException("Too many productIds: " + productIds.size() + ", max is: " + this.maxBatchSize);
+    }
+    productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    LOG.info("Will get product info for {} products", productIds.size());
+
+    // A single $in query on the unique productId index, products that are not found are left out of the response
+    return this.repository.findByProductIdIn(productIds)
+        .log(LOG.getName(), Level.FINE)
+        .map(entity -> this.mapper.entityToApi(entity))
+        .map(product -> setServiceAddress(product));
+  }
+
+  @Override
+  public Flux<Product> listProducts(Integer cursor, int limit, String namePrefix, Integer minWeight, Integer maxWeight) {
+    if (limit < 1 || limit > this.maxPageSize) {
+      throw new InvalidInputException("Invalid limit: " + limit + ", must be between 1 and " + this.maxPageSize);
+    }
+    if (namePrefix != null && namePrefix.isEmpty()) {
+      throw new InvalidInputException("Invalid namePrefix, must not be empty");
+    }
+    if (minWeight != null && maxWeight != null && minWeight > maxWeight) {
+      throw new InvalidInputException("Invalid weight range: " + minWeight + " to " + maxWeight);
+    }
+
+    LOG.info("Will list {} products after productId={}", limit, cursor);
+
+    // Streamed from the database cursor, a page is never held in memory as a whole
+    return this.repository.findPage(cursor, namePrefix, minWeight, maxWeight, limit)
         .log(LOG.getName(), Level.FINE)
         .map(entity -> this.mapper.entityToApi(entity))
         .map(product -> setServiceAddress(product));
@@ -72,8 +156,11 @@ public class ProductServiceImp implements ProductService {
     }
 
     LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-    return this.repository.findByProductId(productId).log(LOG.getName(), Level.FINE)
-        .map(productEntity -> this.repository.delete(productEntity)).flatMap(e -> e);
+    return this.repository.deleteByProductId(productId).log(LOG.getName(), Level.FINE)
+        .doOnNext(count -> LOG.debug("deleteProduct: deleted {} entities", count))
+        .then()
+        // Other replicas evict it when the delete arrives on their change stream
+        .doOnSuccess(done -> this.cache.evict(productId));
   }
 
   private Product setServiceAddress(Product product) {
@@ -13,9 +13,11 @@ import org.springframework.data.domain.Pageable;
 import reactor.test.StepVerifier;
 import se.magnus.microservices.core.product.persistence.ProductEntity;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.microservices.core.product.persistence.ProductWrite;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static java.util.stream.IntStream.rangeClosed;
@@ -79,6 +81,38 @@ public class PersistenceTests extends MongoDbTestBase {
         .expectNext(false).verifyComplete();
   }
 
+  @Test
+  void deleteByProductId() {
+    StepVerifier.create(this.repository.deleteByProductId(this.savedEntity.getProductId())).expectNext(1L).verifyComplete();
+    StepVerifier.create(this.repository.deleteByProductId(this.savedEntity.getProductId())).expectNext(0L).verifyComplete();
+
+    StepVerifier.create(this.repository.existsById(this.savedEntity.getId())).expectNext(false).verifyComplete();
+  }
+
+  @Test
+  void findPage() {
+    this.repository.save(new ProductEntity(2, "nail", 2)).block();
+    this.repository.save(new ProductEntity(3, "hammer", 3)).block();
+    this.repository.save(new ProductEntity(4, "nut", 4)).block();
+    this.repository.save(new ProductEntity(5, "nut", 5)).block();
+
+    StepVerifier.create(this.repository.findPage(null, null, null, null, 2).map(ProductEntity::getProductId))
+        .expectNext(1, 2)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findPage(2, null, null, null, 2).map(ProductEntity::getProductId))
+        .expectNext(3, 4)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findPage(1, "n", null, 4, 10).map(ProductEntity::getProductId))
+        .expectNext(2, 4)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findPage(null, "nu", 5, null, 10).map(ProductEntity::getProductId))
+        .expectNext(5)
+        .verifyComplete();
+  }
+
   @Test
   void getProductById(){
     StepVerifier.create(this.repository.findByProductId(this.savedEntity.getProductId()))
@@ -86,6 +120,35 @@ public class PersistenceTests extends MongoDbTestBase {
         .verifyComplete();
   }
 
+  @Test
+  void getProductsByIds() {
+    this.repository.save(new ProductEntity(2, "n", 2)).block();
+    this.repository.save(new ProductEntity(3, "n", 3)).block();
+
+    StepVerifier.create(this.repository.findByProductIdIn(List.of(1, 2, 4)))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void bulkWrite() {
+    List<ProductWrite> writes = List.of(
+        ProductWrite.insert(new ProductEntity(2, "n", 2)),
+        ProductWrite.insert(new ProductEntity(this.savedEntity.getProductId(), "n", 1)),
+        ProductWrite.delete(3),
+        ProductWrite.insert(new ProductEntity(4, "n", 4)));
+
+    // The duplicate fails on its own, the other writes are applied
+    StepVerifier.create(this.repository.bulkWrite(writes))
+        .expectNextMatches(errors -> errors.keySet().equals(Set.of(1)) && errors.get(1).getCode() == 11000)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findByProductId(4))
+        .expectNextMatches(foundEntity -> foundEntity.getVersion() == 0 && foundEntity.getWeight() == 4)
+        .verifyComplete();
+    StepVerifier.create(this.repository.count()).expectNext(3L).verifyComplete();
+  }
+
   @Test
   void duplicateError() {
     ProductEntity entity = new ProductEntity(this.savedEntity.getProductId(), "n", 1);
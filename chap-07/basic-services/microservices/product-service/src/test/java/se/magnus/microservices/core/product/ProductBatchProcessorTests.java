@@ -0,0 +1,80 @@
+package se.magnus.microservices.core.product;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.microservices.core.product.persistence.ProductWrite;
+import se.magnus.microservices.core.product.services.ProductBatchProcessor;
+import se.magnus.microservices.core.product.services.ProductMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.api.event.Event.Type.DELETE;
+
+public class ProductBatchProcessorTests {
+
+  private ProductRepository repository;
+  private ProductBatchProcessor processor;
+
+  @BeforeEach
+  void setUp() {
+    this.repository = mock(ProductRepository.class);
+    this.processor = new ProductBatchProcessor(this.repository, Mappers.getMapper(ProductMapper.class));
+  }
+
+  @Test
+  void batchIsAppliedWithOneBulkWrite() {
+    when(this.repository.bulkWrite(any())).thenReturn(Mono.just(Map.of(
+        1, new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1))));
+
+    Map<Integer, String> failures = this.processor.process(List.of(create(1), create(2), delete(3))).block();
+
+    verify(this.repository, times(1)).bulkWrite(any());
+    assertEquals(Map.of(1, "Duplicate key, Product Id: 2"), failures);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void writesOfTheSameProductAreNotReordered() {
+    when(this.repository.bulkWrite(any())).thenReturn(Mono.just(Map.of()));
+
+    this.processor.process(List.of(create(1), create(2), delete(1), create(1))).block();
+
+    ArgumentCaptor<List<ProductWrite>> captor = ArgumentCaptor.forClass(List.class);
+    verify(this.repository, times(3)).bulkWrite(captor.capture());
+    assertEquals(List.of(List.of(1, 2), List.of(1), List.of(1)), captor.getAllValues().stream()
+        .map(writes -> writes.stream().map(ProductWrite::getProductId).collect(Collectors.toList()))
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  void invalidEventsFailOnTheirOwn() {
+    when(this.repository.bulkWrite(any())).thenReturn(Mono.just(Map.of()));
+
+    Map<Integer, String> failures = this.processor.process(List.of(create(0), create(1), new Event<>(Event.Type.CREATE_BATCH, 2, null))).block();
+
+    assertEquals(List.of(0, 2), List.copyOf(failures.keySet()));
+    assertEquals("Invalid productId: 0", failures.get(0));
+  }
+
+  private static Event<Integer, Product> create(int productId) {
+    return new Event<>(CREATE, productId, new Product(productId, "name", 1, null));
+  }
+
+  private static Event<Integer, Product> delete(int productId) {
+    return new Event<>(DELETE, productId, null);
+  }
+}
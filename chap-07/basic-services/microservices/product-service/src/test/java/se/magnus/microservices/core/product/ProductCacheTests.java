@@ -0,0 +1,161 @@
+package se.magnus.microservices.core.product;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.product.services.ChangeStreamMonitor;
+import se.magnus.microservices.core.product.services.ProductCache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProductCacheTests {
+
+  private static final int PRODUCT_ID = 1;
+
+  private Sinks.Many<ChangeStreamEvent<ProductEntity>> changes;
+  private SimpleMeterRegistry meterRegistry;
+  private ChangeStreamMonitor changeStreamMonitor;
+  private ProductCache cache;
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    this.changes = Sinks.many().multicast().directBestEffort();
+    ReactiveMongoOperations mongoTemplate = mock(ReactiveMongoOperations.class);
+    when(mongoTemplate.changeStream(eq("products"), any(ChangeStreamOptions.class), eq(ProductEntity.class)))
+        .thenReturn(this.changes.asFlux());
+
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.changeStreamMonitor = new ChangeStreamMonitor();
+    this.cache = new ProductCache(mongoTemplate, this.changeStreamMonitor, this.meterRegistry, true, 100, Duration.ofMinutes(10), Duration.ofSeconds(1));
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.cache.shutdown();
+  }
+
+  @Test
+  void cacheIsBypassedUntilTheChangeStreamIsOpened() {
+    ProductEntity entity = entity("name", 0);
+    get(entity);
+    get(entity);
+    assertEquals(2, this.loads.get());
+    assertEquals(0.0, this.meterRegistry.get("product.cache.watching").gauge().value());
+
+    openChangeStream();
+    get(entity);
+    get(entity);
+    assertEquals(3, this.loads.get());
+    assertEquals(1.0, this.meterRegistry.get("product.cache.watching").gauge().value());
+  }
+
+  @Test
+  void productIsLoadedOnce() {
+    openChangeStream();
+    ProductEntity entity = entity("name", 0);
+    assertEquals("name", get(entity).getName());
+    assertEquals("name", get(entity).getName());
+
+    assertEquals(1, this.loads.get());
+    assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+  }
+
+  @Test
+  void updatedProductIsReplacedAndDeletedProductEvicted() {
+    openChangeStream();
+    ProductEntity entity = entity("name", 0);
+    get(entity);
+
+    ProductEntity updated = entity("new name", 1);
+    updated.setId(entity.getId());
+    this.changes.tryEmitNext(event(OperationType.UPDATE, updated));
+    assertEquals("new name", get(entity).getName());
+    assertEquals(1, this.loads.get());
+
+    this.changes.tryEmitNext(event(OperationType.DELETE, updated));
+    get(entity);
+    assertEquals(2, this.loads.get());
+  }
+
+  @Test
+  void cacheIsBypassedWhileTheChangeStreamIsDown() {
+    openChangeStream();
+    ProductEntity entity = entity("name", 0);
+    get(entity);
+
+    this.changes.tryEmitError(new IllegalStateException("The $changeStream stage is only supported on replica sets"));
+    get(entity);
+    get(entity);
+
+    assertEquals(3, this.loads.get());
+    assertEquals(0.0, this.meterRegistry.get("product.cache.watching").gauge().value());
+  }
+
+  /**
+   * What the command listener of the client sees when the server accepts the change stream.
+   */
+  private void openChangeStream() {
+    ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+    BsonDocument command = new BsonDocument("aggregate", new BsonString("products"))
+        .append("pipeline", new BsonArray(List.of(new BsonDocument("$changeStream", new BsonDocument()))));
+    this.changeStreamMonitor.commandStarted(new CommandStartedEvent(1, connection, "product-db", "aggregate", command));
+    this.changeStreamMonitor.commandSucceeded(new CommandSucceededEvent(1, connection, "aggregate", new BsonDocument(), 1));
+  }
+
+  private ProductEntity get(ProductEntity entity) {
+    return this.cache.get(PRODUCT_ID, () -> Mono.fromCallable(() -> {
+      this.loads.incrementAndGet();
+      return entity;
+    })).block();
+  }
+
+  private static ProductEntity entity(String name, int version) {
+    ProductEntity entity = new ProductEntity(PRODUCT_ID, name, 1);
+    entity.setId(new ObjectId().toHexString());
+    entity.setVersion(version);
+    return entity;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ChangeStreamEvent<ProductEntity> event(OperationType operationType, ProductEntity entity) {
+    ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(operationType, null, null, null, null,
+        new BsonDocument("_id", new BsonObjectId(new ObjectId(entity.getId()))), null, null, null, null);
+
+    ChangeStreamEvent<ProductEntity> event = mock(ChangeStreamEvent.class);
+    when(event.getOperationType()).thenReturn(operationType);
+    when(event.getBody()).thenReturn(operationType == OperationType.DELETE ? null : entity);
+    when(event.getRaw()).thenReturn(raw);
+    return event;
+  }
+}
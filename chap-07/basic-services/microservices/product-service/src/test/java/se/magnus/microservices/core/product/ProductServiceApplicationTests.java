@@ -5,20 +5,30 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.event.Event;
-import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
 
-import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import({TestChannelBinderConfiguration.class})
 class ProductServiceApplicationTests extends MongoDbTestBase{
 
 	@Autowired
@@ -29,7 +39,10 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 
 	@Autowired
 	@Qualifier("messageProcessor")
-	private Consumer<Event<Integer, Product>> messageProcessor;
+	private Function<Flux<Message<Event<Integer, Product>>>, Mono<Void>> messageProcessor;
+
+	@Autowired
+	private OutputDestination target;
 
 	@BeforeEach
 	void setupDb() {
@@ -52,6 +65,84 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 				.jsonPath("$.productId").isEqualTo(productId);
 	}
 
+	@Test
+	void getProductsByIds() {
+		sendCreateProductEvent(1);
+		sendCreateProductEvent(2);
+
+		client.get()
+				.uri("/product?productIds=1,2,3")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2);
+	}
+
+	@Test
+	void listProducts() {
+		IntStream.rangeClosed(1, 5).forEach(this::sendCreateProductEvent);
+
+		client.get()
+				.uri("/product?limit=2&cursor=1&minWeight=2&maxWeight=4")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(2)
+				.jsonPath("$[1].productId").isEqualTo(3);
+
+		// The next page starts after the last product of the previous one
+		StepVerifier.create(client.get()
+						.uri("/product?limit=2&cursor=3&namePrefix=Name")
+						.accept(APPLICATION_NDJSON)
+						.exchange()
+						.expectStatus().isEqualTo(HttpStatus.OK)
+						.returnResult(Product.class).getResponseBody()
+						.map(Product::getProductId))
+				.expectNext(4, 5)
+				.verifyComplete();
+	}
+
+	@Test
+	void listProductsInvalidLimit() {
+		client.get()
+				.uri("/product?limit=10001")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid limit: 10001, must be between 1 and 10000");
+	}
+
+	@Test
+	void getProductWithFields() {
+		sendCreateProductEvent(1);
+
+		getAndVerifyProduct("/1?fields=name", HttpStatus.OK)
+				.jsonPath("$.productId").isEqualTo(1)
+				.jsonPath("$.name").isEqualTo("Name 1")
+				.jsonPath("$.weight").isEqualTo(0);
+
+		getAndVerifyProduct("/1?fields=name,price", HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid field: price");
+	}
+
+	@Test
+	void getProductsTooManyIds() {
+		String productIds = IntStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+		client.get()
+				.uri("/product?productIds=" + productIds)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Too many productIds: 101, max is: 100");
+	}
+
 	@Test
 	void duplicateError() {
 		int productId = 1;
@@ -62,9 +153,11 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 
 		assertNotNull(this.repository.findByProductId(productId));
 
-		InvalidInputException thrown = assertThrows(InvalidInputException.class,
-				() -> sendCreateProductEvent(productId), "Expected a InvalidInputException here!");
-		assertEquals("Duplicate key, Product Id: " + productId, thrown.getMessage());
+		// Failed events are retried and then sent to the dead letter queue
+		sendCreateProductEvent(productId);
+		Message<byte[]> deadLetter = this.target.receive(5000, "DLX");
+		assertNotNull(deadLetter);
+		assertEquals("Duplicate key, Product Id: " + productId, deadLetter.getHeaders().get("x-exception-message"));
 
 	}
 
@@ -128,12 +221,12 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 	private void sendCreateProductEvent(int productId) {
 		Product product = new Product(productId, "Name " + productId, productId, "SA");
 		Event<Integer, Product> event = new Event(Event.Type.CREATE, productId, product);
-		this.messageProcessor.accept(event);
+		this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
 	}
 
 	private void sendDeleteProductEvent(int productId) {
 		Event<Integer, Product> event = new Event(Event.Type.DELETE, productId, null);
-		messageProcessor.accept(event);
+		this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
 	}
 
 }
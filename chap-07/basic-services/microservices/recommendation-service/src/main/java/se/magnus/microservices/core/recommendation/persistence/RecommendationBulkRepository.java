@@ -0,0 +1,15 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface RecommendationBulkRepository {
+
+  /**
+   * Inserts the recommendations with one unordered bulk write. Recommendations that already exist are left as they
+   * are and the rest are still inserted, so that a redelivered batch completes what an earlier delivery started.
+   * Returns the recommendations that were inserted.
+   */
+  Flux<RecommendationEntity> insertIgnoringDuplicates(List<RecommendationEntity> entities);
+}
@@ -0,0 +1,71 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class RecommendationBulkRepositoryImpl implements RecommendationBulkRepository {
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  @Autowired
+  public RecommendationBulkRepositoryImpl(ReactiveMongoOperations mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public Flux<RecommendationEntity> insertIgnoringDuplicates(List<RecommendationEntity> entities) {
+    if (entities.isEmpty()) {
+      return Flux.empty();
+    }
+
+    List<Document> documents = entities.stream().map(this::toDocument).collect(Collectors.toList());
+    List<WriteModel<Document>> models = documents.stream().map(InsertOneModel::new).collect(Collectors.toList());
+
+    return this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(RecommendationEntity.class))
+        .flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .map(result -> Set.<Integer>of())
+        .onErrorResume(MongoBulkWriteException.class, ex -> {
+          // Only duplicates are expected, any other failure fails the whole batch
+          if (ex.getWriteErrors().isEmpty() || ex.getWriteConcernError() != null || ex.getWriteErrors().stream()
+              .anyMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY)) {
+            return Mono.error(ex);
+          }
+          return Mono.just(ex.getWriteErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet()));
+        })
+        .flatMapMany(duplicates -> Flux.fromStream(IntStream.range(0, entities.size())
+            .filter(index -> !duplicates.contains(index))
+            .mapToObj(index -> {
+              RecommendationEntity entity = entities.get(index);
+              entity.setId(documents.get(index).get("_id").toString());
+              return entity;
+            })));
+  }
+
+  /**
+   * Written as the template would insert a new entity, with the first version and a generated id.
+   */
+  private Document toDocument(RecommendationEntity entity) {
+    entity.setVersion(0);
+    Document document = new Document();
+    this.mongoTemplate.getConverter().write(entity, document);
+    if (!document.containsKey("_id")) {
+      document.put("_id", new ObjectId());
+    }
+    return document;
+  }
+}
@@ -22,6 +22,10 @@ public class RecommendationEntity {
   private int rating;
   private String content;
 
+  // Used when reading projections, fields that are not read keep their default values
+  public RecommendationEntity() {
+  }
+
   public RecommendationEntity(int productId, int recommendationId, String author, int rating, String content) {
     this.productId = productId;
     this.recommendationId = recommendationId;
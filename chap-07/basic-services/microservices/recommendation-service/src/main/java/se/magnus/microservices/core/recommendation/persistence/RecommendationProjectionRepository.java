@@ -0,0 +1,40 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Queries written against the template, so that they can be projected and bounded by the deadline of the request
+ * (maxTimeMS), if there is one in the Reactor context.
+ */
+public interface RecommendationProjectionRepository {
+
+  Flux<RecommendationEntity> findByProductId(int productId);
+
+  /**
+   * Only reads the given fields from the database, fields that are left out keep their default values.
+   */
+  Flux<RecommendationEntity> findByProductId(int productId, Collection<String> fields);
+
+  /**
+   * Only reads the id and version of the recommendations, in id order, enough to tell if they have changed.
+   */
+  Flux<RecommendationEntity> findVersionsByProductId(int productId);
+
+  /**
+   * Keyset page in recommendationId order, served by the unique (productId, recommendationId) index. Starts after
+   * the cursor, or at the first recommendation if it is null.
+   */
+  Flux<RecommendationEntity> findPageByProductId(int productId, Integer cursor, int limit);
+
+  Mono<Long> countByProductId(int productId);
+
+  Flux<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  /**
+   * Deletes all recommendations of the product with one deleteMany on the server, returns how many were deleted.
+   */
+  Mono<Long> deleteByProductId(int productId);
+}
@@ -0,0 +1,90 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import com.mongodb.client.result.DeleteResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import se.magnus.util.http.Deadline;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class RecommendationProjectionRepositoryImpl implements RecommendationProjectionRepository {
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  @Autowired
+  public RecommendationProjectionRepositoryImpl(ReactiveMongoOperations mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public Flux<RecommendationEntity> findByProductId(int productId) {
+    return Flux.deferContextual(context ->
+        this.mongoTemplate.find(withDeadline(Query.query(where("productId").is(productId)), context), RecommendationEntity.class));
+  }
+
+  @Override
+  public Flux<RecommendationEntity> findByProductId(int productId, Collection<String> fields) {
+    return Flux.deferContextual(context -> {
+      Query query = Query.query(where("productId").is(productId));
+      fields.forEach(field -> query.fields().include(field));
+
+      return this.mongoTemplate.find(withDeadline(query, context), RecommendationEntity.class);
+    });
+  }
+
+  @Override
+  public Flux<RecommendationEntity> findVersionsByProductId(int productId) {
+    return Flux.deferContextual(context -> {
+      Query query = Query.query(where("productId").is(productId)).with(Sort.by("id"));
+      query.fields().include("id").include("version");
+
+      return this.mongoTemplate.find(withDeadline(query, context), RecommendationEntity.class);
+    });
+  }
+
+  @Override
+  public Flux<RecommendationEntity> findPageByProductId(int productId, Integer cursor, int limit) {
+    return Flux.deferContextual(context -> {
+      Criteria criteria = where("productId").is(productId);
+      if (cursor != null) {
+        criteria = criteria.and("recommendationId").gt(cursor);
+      }
+      Query query = Query.query(criteria).with(Sort.by("recommendationId")).limit(limit);
+
+      return this.mongoTemplate.find(withDeadline(query, context), RecommendationEntity.class);
+    });
+  }
+
+  @Override
+  public Mono<Long> countByProductId(int productId) {
+    return Mono.deferContextual(context ->
+        this.mongoTemplate.count(withDeadline(Query.query(where("productId").is(productId)), context), RecommendationEntity.class));
+  }
+
+  @Override
+  public Flux<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds) {
+    return Flux.deferContextual(context ->
+        this.mongoTemplate.find(withDeadline(Query.query(where("productId").in(productIds)), context), RecommendationEntity.class));
+  }
+
+  @Override
+  public Mono<Long> deleteByProductId(int productId) {
+    return this.mongoTemplate.remove(Query.query(where("productId").is(productId)), RecommendationEntity.class)
+        .map(DeleteResult::getDeletedCount);
+  }
+
+  private Query withDeadline(Query query, ContextView context) {
+    // The server aborts the query when the deadline passes, a max time of zero would mean no limit at all
+    Deadline.from(context).ifPresent(deadline -> query.maxTime(Duration.ofMillis(Math.max(1, deadline.remaining().toMillis()))));
+    return query;
+  }
+}
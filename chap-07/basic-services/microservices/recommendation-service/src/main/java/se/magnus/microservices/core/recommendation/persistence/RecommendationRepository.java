@@ -1,11 +1,12 @@
 package se.magnus.microservices.core.recommendation.persistence;
 
 import org.springframework.data.repository.CrudRepository;
-import org.springframework.data.repository.reactive.ReactiveCrudRepository;
-import reactor.core.publisher.Flux;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
 import java.util.List;
 
-public interface RecommendationRepository extends ReactiveCrudRepository<RecommendationEntity, String> {
-  Flux<RecommendationEntity> findByProductId(int productId);
+/**
+ * Batches of recommendations are written with insertIgnoringDuplicates, an unordered bulk insert.
+ */
+public interface RecommendationRepository extends ReactiveMongoRepository<RecommendationEntity, String>, RecommendationProjectionRepository, RecommendationBulkRepository {
 }
@@ -3,53 +3,84 @@ package se.magnus.microservices.core.recommendation.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.util.messaging.ReactiveMessageProcessor;
 
-import java.util.function.Consumer;
+import java.time.Duration;
+import java.util.function.Function;
 
 @Configuration
 public class MessageProcessorConfig {
 
   private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
 
+  static final String DEAD_LETTER_BINDING = "messageProcessorDlq-out-0";
+
   private final RecommendationService recommendationService;
+  private final ReactiveMessageProcessor<Event<Integer, Recommendation>> reactiveProcessor;
 
   @Autowired
-  public MessageProcessorConfig(RecommendationService recommendationService) {
+  public MessageProcessorConfig(
+      RecommendationService recommendationService,
+      StreamBridge streamBridge,
+      @Value("${app.message-processor.concurrency:16}") int concurrency,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.maxAttempts:3}") int maxAttempts,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffInitialInterval:1000}") long backOffInitialInterval,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffMaxInterval:10000}") long backOffMaxInterval,
+      @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.backOffMultiplier:2.0}") double backOffMultiplier) {
+
     this.recommendationService = recommendationService;
+    this.reactiveProcessor = new ReactiveMessageProcessor<>(Event::getKey, this::process,
+        ReactiveMessageProcessor.deadLetterTo(streamBridge, DEAD_LETTER_BINDING), concurrency, maxAttempts,
+        Duration.ofMillis(backOffInitialInterval), Duration.ofMillis(backOffMaxInterval), backOffMultiplier);
   }
 
+  /**
+   * Processes the events of different products concurrently, without blocking a thread per event.
+   */
   @Bean
-  public Consumer<Event<Integer, Recommendation>> messageProcessor() {
-    return event -> {
-
-      LOG.info("Process message created at {}...", event.getEventCreatedAt());
-       switch (event.getEventType()) {
-         case CREATE:
-           Recommendation recommendation = event.getData();
-           LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(), recommendation.getRecommendationId());
-           recommendationService.createRecommendation(recommendation).block();
-           break;
-
-         case DELETE:
-           int productId = event.getKey();
-           LOG.info("Delete recommendations with ProductID: {}", productId);
-           recommendationService.deleteRecommendations(productId).block();
-           break;
-
-         default:
-           String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-           LOG.warn(errorMessage);
-           throw new EventProcessingException(errorMessage);
-       }
-       LOG.info("Message processing done!");
-    };
+  public Function<Flux<Message<Event<Integer, Recommendation>>>, Mono<Void>> messageProcessor() {
+    return this.reactiveProcessor::process;
   }
 
+  private Mono<Void> process(Event<Integer, Recommendation> event) {
+    LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+    Mono<Void> result;
+    switch (event.getEventType()) {
+      case CREATE:
+        Recommendation recommendation = event.getData();
+        LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(), recommendation.getRecommendationId());
+        result = this.recommendationService.createRecommendation(recommendation).then();
+        break;
+
+      case CREATE_BATCH:
+        LOG.info("Create {} recommendations with ProductID: {}", event.getBatch().size(), event.getKey());
+        result = this.recommendationService.createRecommendations(event.getKey(), event.getBatch()).then();
+        break;
 
+      case DELETE:
+        int productId = event.getKey();
+        LOG.info("Delete recommendations with ProductID: {}", productId);
+        result = this.recommendationService.deleteRecommendations(productId);
+        break;
+
+      default:
+        String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE, CREATE_BATCH or DELETE event";
+        LOG.warn(errorMessage);
+        return Mono.error(new EventProcessingException(errorMessage));
+    }
+
+    return result.doOnSuccess(done -> LOG.info("Message processing done!"));
+  }
 }
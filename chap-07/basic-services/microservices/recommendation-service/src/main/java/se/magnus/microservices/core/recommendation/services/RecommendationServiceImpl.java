@@ -4,34 +4,58 @@ import com.mongodb.DuplicateKeyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.recommendation.RecommendationPage;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+import se.magnus.util.http.ConditionalGet;
 import se.magnus.util.http.ServiceUtil;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 
 @RestController
 public class RecommendationServiceImpl implements RecommendationService {
 
   private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceImpl.class);
 
+  // Field names in the API mapped to the names used in the database
+  private static final Map<String, String> PROJECTABLE_FIELDS = Map.of(
+      "productId", "productId",
+      "recommendationId", "recommendationId",
+      "author", "author",
+      "rate", "rating",
+      "content", "content");
+
   private final RecommendationRepository repository;
 
   private final RecommendationMapper mapper;
   private ServiceUtil serviceUtil;
-
+  private final int maxBatchSize;
+  private final int maxPageSize;
 
   @Autowired
-  public RecommendationServiceImpl(RecommendationRepository repository, RecommendationMapper mapper, ServiceUtil serviceUtil) {
+  public RecommendationServiceImpl(
+      RecommendationRepository repository,
+      RecommendationMapper mapper,
+      ServiceUtil serviceUtil,
+      @Value("${app.max-batch-size:100}") int maxBatchSize,
+      @Value("${app.max-page-size:1000}") int maxPageSize) {
     this.repository = repository;
     this.mapper = mapper;
     this.serviceUtil = serviceUtil;
+    this.maxBatchSize = maxBatchSize;
+    this.maxPageSize = maxPageSize;
   }
 
 
@@ -51,6 +75,22 @@ public class RecommendationServiceImpl implements RecommendationService {
     return newEntity;
   }
 
+  @Override
+  public Flux<Recommendation> createRecommendations(int productId, List<Recommendation> body) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    body.stream().filter(recommendation -> recommendation.getProductId() != productId).findFirst().ifPresent(recommendation -> {
+      throw new InvalidInputException("Recommendation of another product in the batch, productId: " + recommendation.getProductId());
+    });
+
+    // All recommendations are written with one unordered bulk insert. Recommendations that already exist are skipped,
+    // so that a batch that was partly written before is completed when it is delivered again.
+    return this.repository.insertIgnoringDuplicates(this.mapper.apiListToEntityList(body))
+        .log(LOG.getName(), Level.FINE)
+        .map(recommendationEntity -> this.mapper.entityToApi(recommendationEntity));
+  }
+
   @Override
   public Flux<Recommendation> getRecommendations(int productId) {
     if (productId < 1) {
@@ -59,7 +99,85 @@ public class RecommendationServiceImpl implements RecommendationService {
 
     LOG.info("Will get recommendations for product with id={}", productId);
 
-    return this.repository.findByProductId(productId)
+    // The ETag is derived from the ids and versions of all recommendations of the product, the recommendations are
+    // only read, and streamed, if it has changed
+    return this.repository.findVersionsByProductId(productId)
+        .collectList()
+        .flatMapMany(versions -> ConditionalGet.withETag(
+            ConditionalGet.eTag(versions.stream().flatMap(version -> Stream.of(version.getId(), version.getVersion()))),
+            this.repository.findByProductId(productId)))
+        .log(LOG.getName(), Level.FINE)
+        .map(entity -> this.mapper.entityToApi(entity))
+        .map(recommendation -> setServiceAddress(recommendation));
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendations(int productId, List<String> fields) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+
+    Set<String> entityFields = new HashSet<>(List.of("productId", "recommendationId"));
+    fields.forEach(field -> {
+      String entityField = PROJECTABLE_FIELDS.get(field);
+      if (entityField == null) {
+        throw new InvalidInputException("Invalid field: " + field);
+      }
+      entityFields.add(entityField);
+    });
+
+    LOG.info("Will get recommendations for product with id={}, fields={}", productId, fields);
+
+    return this.repository.findByProductId(productId, entityFields)
+        .log(LOG.getName(), Level.FINE)
+        .map(entity -> this.mapper.entityToApi(entity))
+        .map(recommendation -> setServiceAddress(recommendation));
+  }
+
+  @Override
+  public Mono<RecommendationPage> getRecommendationPage(int productId, int limit, Integer cursor) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    if (limit < 1 || limit > this.maxPageSize) {
+      throw new InvalidInputException("Invalid limit: " + limit + ", must be between 1 and " + this.maxPageSize);
+    }
+
+    LOG.info("Will get {} recommendations for product with id={}, after recommendationId={}", limit, productId, cursor);
+
+    // One more than the limit is read to find out if there is a next page
+    return Mono.zip(
+        this.repository.findPageByProductId(productId, cursor, limit + 1)
+            .map(entity -> this.mapper.entityToApi(entity))
+            .map(recommendation -> setServiceAddress(recommendation))
+            .collectList(),
+        this.repository.countByProductId(productId))
+        .map(results -> {
+          List<Recommendation> list = results.getT1();
+          if (list.size() <= limit) {
+            return new RecommendationPage(list, results.getT2(), null);
+          }
+          List<Recommendation> page = list.subList(0, limit);
+          return new RecommendationPage(page, results.getT2(), page.get(limit - 1).getRecommendationId());
+        })
+        .log(LOG.getName(), Level.FINE);
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      throw new InvalidInputException("No productIds specified");
+    }
+    if (productIds.size() > this.maxBatchSize) {
+      throw new InvalidInputException("Too many productIds: " + productIds.size() + ", max is: " + this.maxBatchSize);
+    }
+    productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    LOG.info("Will get recommendations for {} products", productIds.size());
+
+    return this.repository.findByProductIdIn(productIds)
         .log(LOG.getName(), Level.FINE)
         .map(entity -> this.mapper.entityToApi(entity))
         .map(recommendation -> setServiceAddress(recommendation));
@@ -72,7 +190,9 @@ public class RecommendationServiceImpl implements RecommendationService {
     }
 
     LOG.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}", productId);
-    return this.repository.deleteAll(this.repository.findByProductId(productId));
+    return this.repository.deleteByProductId(productId)
+        .doOnNext(count -> LOG.debug("deleteRecommendations: deleted {} recommendations", count))
+        .then();
   }
 
   private Recommendation setServiceAddress(Recommendation recommendation) {
@@ -11,6 +11,8 @@ import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @DataMongoTest(excludeAutoConfiguration = EmbeddedMongoAutoConfiguration.class)
@@ -47,6 +49,33 @@ public class PersistenceTests extends MongoDbTestBase {
     StepVerifier.create(this.repository.count()).expectNext(2L).verifyComplete();
   }
 
+  @Test
+  void createBatch() {
+    StepVerifier.create(this.repository.insert(List.of(
+            new RecommendationEntity(2, 1, "a", 3, "c"),
+            new RecommendationEntity(2, 2, "a", 3, "c"))))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findByProductId(2)).expectNextCount(2).verifyComplete();
+  }
+
+  @Test
+  void createBatchAgainSkipsExistingRecommendations() {
+    // The first recommendation of the batch was written by an earlier, interrupted delivery
+    StepVerifier.create(this.repository.insertIgnoringDuplicates(List.of(
+            new RecommendationEntity(1, 2, "a", 3, "c"),
+            new RecommendationEntity(1, 3, "a", 3, "c"),
+            new RecommendationEntity(1, 4, "a", 3, "c"))).map(RecommendationEntity::getRecommendationId))
+        .expectNext(3, 4)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findByProductId(1))
+        .expectNextMatches(entity -> entity.getRecommendationId() == 2 && entity.getVersion() == 0)
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
   @Test
   void update() {
 
@@ -67,6 +96,17 @@ public class PersistenceTests extends MongoDbTestBase {
     StepVerifier.create(this.repository.existsById(this.savedEntity.getId())).expectNext(false).verifyComplete();
   }
 
+  @Test
+  void deleteByProductId() {
+    this.repository.save(new RecommendationEntity(1, 3, "a", 3, "c")).block();
+    this.repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+
+    StepVerifier.create(this.repository.deleteByProductId(1)).expectNext(2L).verifyComplete();
+    StepVerifier.create(this.repository.deleteByProductId(1)).expectNext(0L).verifyComplete();
+
+    StepVerifier.create(this.repository.count()).expectNext(1L).verifyComplete();
+  }
+
   @Test
   void getByProductId() {
     StepVerifier.create(this.repository.findByProductId(this.savedEntity.getProductId()))
@@ -74,6 +114,42 @@ public class PersistenceTests extends MongoDbTestBase {
         .verifyComplete();
   }
 
+  @Test
+  void getVersionsByProductId() {
+    StepVerifier.create(this.repository.findVersionsByProductId(this.savedEntity.getProductId()))
+        .expectNextMatches(foundEntity -> foundEntity.getId().equals(this.savedEntity.getId())
+            && foundEntity.getVersion().equals(this.savedEntity.getVersion())
+            && foundEntity.getAuthor() == null)
+        .verifyComplete();
+  }
+
+  @Test
+  void getByProductIds() {
+    this.repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+    this.repository.save(new RecommendationEntity(3, 1, "a", 3, "c")).block();
+
+    StepVerifier.create(this.repository.findByProductIdIn(List.of(1, 2)))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void getPageByProductId() {
+    this.repository.save(new RecommendationEntity(1, 5, "a", 3, "c")).block();
+    this.repository.save(new RecommendationEntity(1, 3, "a", 3, "c")).block();
+    this.repository.save(new RecommendationEntity(2, 4, "a", 3, "c")).block();
+
+    StepVerifier.create(this.repository.findPageByProductId(1, null, 2).map(RecommendationEntity::getRecommendationId))
+        .expectNext(2, 3)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.findPageByProductId(1, 3, 2).map(RecommendationEntity::getRecommendationId))
+        .expectNext(5)
+        .verifyComplete();
+
+    StepVerifier.create(this.repository.countByProductId(1)).expectNext(3L).verifyComplete();
+  }
+
   @Test
   void duplicateError() {
 
@@ -5,20 +5,27 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.event.Event;
-import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
 
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.http.HttpStatus.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import({TestChannelBinderConfiguration.class})
 class RecommendationServiceApplicationTests extends MongoDbTestBase {
 
 	@Autowired
@@ -29,7 +36,10 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
 
 	@Autowired
 	@Qualifier("messageProcessor")
-	private Consumer<Event<Integer, Recommendation>> messageProcessor;
+	private Function<Flux<Message<Event<Integer, Recommendation>>>, Mono<Void>> messageProcessor;
+
+	@Autowired
+	private OutputDestination target;
 
 	@BeforeEach
 	void setupDb() {
@@ -62,11 +72,11 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
 
 		assertEquals(1, (long)this.repository.count().block());
 
-		InvalidInputException thrown = assertThrows(
-				InvalidInputException.class,
-				() -> sendCreateRecommendationEvent(productId, recommendationId),
-				"Expected a InvalidInputException here!");
-		assertEquals("Duplicate key, Product Id: 1, Recommendation Id:1", thrown.getMessage());
+		// Failed events are retried and then sent to the dead letter queue
+		sendCreateRecommendationEvent(productId, recommendationId);
+		Message<byte[]> deadLetter = this.target.receive(5000, "DLX");
+		assertNotNull(deadLetter);
+		assertEquals("Duplicate key, Product Id: 1, Recommendation Id:1", deadLetter.getHeaders().get("x-exception-message"));
 
 		assertEquals(1, (long)this.repository.count().block());
 	}
@@ -137,12 +147,12 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
 		Recommendation recommendation = new Recommendation(productId, recommendationId, "Author "
 				+ recommendationId, recommendationId, "Content " + recommendationId, "SA");
 		Event<Integer, Recommendation> event = new Event(Event.Type.CREATE, productId, recommendation);
-		this.messageProcessor.accept(event);
+		this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
 	}
 
 	private void sendDeleteRecommendationEvent(int productId) {
 		Event<Integer, Recommendation> event = new Event(Event.Type.DELETE, productId, null);
-		this.messageProcessor.accept(event);
+		this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
 	}
 
 }
@@ -0,0 +1,127 @@
+package se.magnus.microservices.core.recommendation.benchmarks;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.testcontainers.containers.MongoDBContainer;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationBulkRepositoryImpl;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationProjectionRepositoryImpl;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares deleting the recommendations of a product by finding them and deleting them one by one, as
+ * deleteRecommendations used to, with one deleteMany on productId.
+ *
+ * Runs against MongoDB in a container, the commands sent to it are counted with a command listener. Each operation
+ * deletes recommendationCount recommendations that are inserted before it. The round trips per operation are
+ * printed when each trial ends.
+ *
+ * Not run by the build, run its main method from the test classpath, with Docker available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class RecommendationDeleteBenchmark {
+
+  private static final int PRODUCT_ID = 1;
+
+  @Param({"10", "100", "1000"})
+  private int recommendationCount;
+
+  private final AtomicLong commands = new AtomicLong();
+  private long operationCommands;
+  private long operations;
+
+  private MongoDBContainer database;
+  private MongoClient client;
+  private ReactiveMongoTemplate template;
+  private RecommendationRepository repository;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.database = new MongoDBContainer("mongo:4.4.2");
+    this.database.start();
+
+    CommandListener counter = new CommandListener() {
+      @Override
+      public void commandStarted(CommandStartedEvent event) {
+        commands.incrementAndGet();
+      }
+    };
+    this.client = MongoClients.create(MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(this.database.getReplicaSetUrl()))
+        .addCommandListener(counter)
+        .build());
+    this.template = new ReactiveMongoTemplate(this.client, "test");
+    this.template.indexOps(RecommendationEntity.class)
+        .ensureIndex(new Index().on("productId", Sort.Direction.ASC).on("recommendationId", Sort.Direction.ASC).unique())
+        .block();
+
+    this.repository = new ReactiveMongoRepositoryFactory(this.template)
+        .getRepository(RecommendationRepository.class, RepositoryFragments.just(
+            new RecommendationProjectionRepositoryImpl(this.template), new RecommendationBulkRepositoryImpl(this.template)));
+  }
+
+  @Setup(Level.Invocation)
+  public void insertRecommendations() {
+    List<RecommendationEntity> recommendations = IntStream.rangeClosed(1, this.recommendationCount)
+        .mapToObj(recommendationId -> new RecommendationEntity(PRODUCT_ID, recommendationId, "Author " + recommendationId,
+            recommendationId % 5, "Content of recommendation " + recommendationId))
+        .collect(Collectors.toList());
+    this.template.insertAll(recommendations).blockLast();
+
+    // Only the commands of the operation are counted
+    this.commands.set(0);
+  }
+
+  @TearDown(Level.Invocation)
+  public void countRoundTrips() {
+    this.operationCommands += this.commands.get();
+    this.operations++;
+  }
+
+  @Benchmark
+  public void findThenDeleteEach() {
+    this.repository.deleteAll(this.repository.findByProductId(PRODUCT_ID)).block();
+  }
+
+  @Benchmark
+  public Long deleteMany() {
+    return this.repository.deleteByProductId(PRODUCT_ID).block();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.out.printf("%n%d recommendations: %.1f round trips per delete%n",
+        this.recommendationCount, (double) this.operationCommands / this.operations);
+
+    this.client.close();
+    this.database.stop();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RecommendationDeleteBenchmark.class.getSimpleName()).build()).run();
+  }
+}
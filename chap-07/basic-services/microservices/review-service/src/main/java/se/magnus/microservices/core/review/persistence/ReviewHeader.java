@@ -0,0 +1,15 @@
+package se.magnus.microservices.core.review.persistence;
+
+/**
+ * Projection of a review without its content, lets reads that do not need the content skip that column.
+ */
+public interface ReviewHeader {
+
+  int getProductId();
+
+  int getReviewId();
+
+  String getAuthor();
+
+  String getSubject();
+}
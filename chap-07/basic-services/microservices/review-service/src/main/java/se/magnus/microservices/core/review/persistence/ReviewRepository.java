@@ -1,12 +1,37 @@
 package se.magnus.microservices.core.review.persistence;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
 
   @Transactional(readOnly = true)
   List<ReviewEntity> findByProductId(int productId);
+
+  @Transactional(readOnly = true)
+  List<ReviewHeader> findHeadersByProductId(int productId);
+
+  @Transactional(readOnly = true)
+  List<ReviewVersion> findVersionsByProductIdOrderById(int productId);
+
+  /**
+   * The reviews of the product among the given ones that already exist, runs in the transaction of the caller.
+   */
+  List<ReviewHeader> findHeadersByProductIdAndReviewIdIn(int productId, Collection<Integer> reviewIds);
+
+  /**
+   * Keyset page in reviewId order, served by the unique (productId, reviewId) index.
+   */
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByProductIdAndReviewIdGreaterThanOrderByReviewId(int productId, int reviewId, Pageable pageable);
+
+  @Transactional(readOnly = true)
+  long countByProductId(int productId);
+
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds);
 }
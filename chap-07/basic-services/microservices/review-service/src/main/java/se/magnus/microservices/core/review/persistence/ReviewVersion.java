@@ -0,0 +1,11 @@
+package se.magnus.microservices.core.review.persistence;
+
+/**
+ * Projection of a review on its id and version, enough to tell if the reviews of a product have changed.
+ */
+public interface ReviewVersion {
+
+  int getId();
+
+  int getVersion();
+}
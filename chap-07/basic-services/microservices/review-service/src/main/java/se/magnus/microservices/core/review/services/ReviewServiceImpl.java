@@ -3,36 +3,65 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.persistence.ReviewHeader;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.util.http.ConditionalGet;
+import se.magnus.util.http.Deadline;
 import se.magnus.util.http.ServiceUtil;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.logging.Level;
 
 @RestController
 public class ReviewServiceImpl implements ReviewService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceImpl.class);
+  private static final Set<String> PROJECTABLE_FIELDS = Set.of("productId", "reviewId", "author", "subject", "content");
   private final ReviewRepository repository;
   private final ReviewMapper mapper;
   private final ServiceUtil serviceUtil;
   private final Scheduler jdbcScheduler;
+  private final PlatformTransactionManager transactionManager;
+  private final int maxBatchSize;
+  private final int maxPageSize;
 
   @Autowired
-  public ReviewServiceImpl(@Qualifier("jdbcScheduler") Scheduler jdbcScheduler, ReviewRepository repository, ReviewMapper mapper, ServiceUtil serviceUtil) {
+  public ReviewServiceImpl(
+      @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+      ReviewRepository repository,
+      ReviewMapper mapper,
+      ServiceUtil serviceUtil,
+      PlatformTransactionManager transactionManager,
+      @Value("${app.max-batch-size:100}") int maxBatchSize,
+      @Value("${app.max-page-size:1000}") int maxPageSize) {
     this.jdbcScheduler = jdbcScheduler;
+    this.transactionManager = transactionManager;
     this.repository = repository;
     this.mapper = mapper;
     this.serviceUtil = serviceUtil;
+    this.maxBatchSize = maxBatchSize;
+    this.maxPageSize = maxPageSize;
   }
 
   @Override
@@ -60,6 +89,50 @@ public class ReviewServiceImpl implements ReviewService {
     }
   }
 
+  @Override
+  public Flux<Review> createReviews(int productId, List<Review> body) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    body.stream().filter(review -> review.getProductId() != productId).findFirst().ifPresent(review -> {
+      throw new InvalidInputException("Review of another product in the batch, productId: " + review.getProductId());
+    });
+
+    return Mono.fromCallable(() -> internalCreateReviews(productId, body))
+        .flatMapMany(Flux::fromIterable)
+        .subscribeOn(jdbcScheduler);
+  }
+
+  private List<Review> internalCreateReviews(int productId, List<Review> body) {
+    try {
+      // Reviews that already exist are skipped in the same transaction, so that a batch that was written before is
+      // completed rather than rejected when it is delivered again. Hibernate sends the inserts as JDBC batches of
+      // hibernate.jdbc.batch_size.
+      TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+      List<ReviewEntity> newEntities = transaction.execute(status -> {
+        Set<Integer> existingReviewIds = this.repository.findHeadersByProductIdAndReviewIdIn(productId,
+                body.stream().map(Review::getReviewId).collect(Collectors.toList())).stream()
+            .map(ReviewHeader::getReviewId)
+            .collect(Collectors.toSet());
+
+        List<ReviewEntity> saved = new ArrayList<>();
+        this.repository.saveAll(this.mapper.apiListToEntityList(body).stream()
+                .filter(entity -> !existingReviewIds.contains(entity.getReviewId()))
+                .collect(Collectors.toList()))
+            .forEach(saved::add);
+        return saved;
+      });
+
+      LOG.debug("createReviews: created {} review entities for productId: {}, skipped {} that already existed",
+          newEntities.size(), productId, body.size() - newEntities.size());
+
+      return this.mapper.entityListToApiList(newEntities);
+    }
+    catch (DataIntegrityViolationException dive) {
+      throw new InvalidInputException("Duplicate key, Product Id: " + productId + ", in a batch of " + body.size() + " reviews");
+    }
+  }
+
   @Override
   public Flux<Review> getReviews(int productId) {
     if (productId < 1) {
@@ -68,23 +141,113 @@ public class ReviewServiceImpl implements ReviewService {
 
     LOG.info("Will get reviews for product with id={}", productId);
 
+    // The ETag is derived from the ids and versions of all reviews of the product, the reviews are only read if it has changed
+    return query(() -> this.repository.findVersionsByProductIdOrderById(productId))
+        .collectList()
+        .flatMapMany(versions -> ConditionalGet.withETag(
+            ConditionalGet.eTag(versions.stream().flatMap(version -> Stream.of(version.getId(), version.getVersion()))),
+            query(() -> toApi(this.repository.findByProductId(productId)))));
+  }
 
+  private List<Review> internalGetReviews(int productId) {
+    return toApi(this.repository.findByProductId(productId));
+  }
 
-    List<ReviewEntity> entityList = this.repository.findByProductId(productId);
+  private List<Review> toApi(List<ReviewEntity> entityList) {
     List<Review> list = this.mapper.entityListToApiList(entityList);
-    list.forEach(e -> e.setServiceAddress(this.serviceUtil.getServiceAddress()));
+    list.forEach(review -> review.setServiceAddress(this.serviceUtil.getServiceAddress()));
 
-    LOG.debug("getReviews: response size: {}", list.size());
+    LOG.debug("Response size: {}", list.size());
 
-    return Mono.fromCallable(() -> internalGetReviews(productId))
-        .flatMapMany(Flux::fromIterable)
-        .log(LOG.getName(), Level.FINE)
-        .subscribeOn(this.jdbcScheduler);
+    return list;
   }
 
-  private List<Review> internalGetReviews(int productId) {
+  @Override
+  public Flux<Review> getReviews(int productId, List<String> fields) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    fields.stream().filter(field -> !PROJECTABLE_FIELDS.contains(field)).findFirst().ifPresent(field -> {
+      throw new InvalidInputException("Invalid field: " + field);
+    });
+
+    LOG.info("Will get reviews for product with id={}, fields={}", productId, fields);
+
+    return query(() -> internalGetReviews(productId, fields));
+  }
 
-    List<ReviewEntity> entityList = this.repository.findByProductId(productId);
+  private List<Review> internalGetReviews(int productId, List<String> fields) {
+
+    // The content column is only read when it is asked for
+    if (fields.contains("content")) {
+      return internalGetReviews(productId);
+    }
+
+    List<Review> list = this.repository.findHeadersByProductId(productId).stream()
+        .map(header -> new Review(
+            header.getProductId(),
+            header.getReviewId(),
+            fields.contains("author") ? header.getAuthor() : null,
+            fields.contains("subject") ? header.getSubject() : null,
+            null,
+            this.serviceUtil.getServiceAddress()))
+        .collect(Collectors.toList());
+
+    LOG.debug("Response size: {}", list.size());
+
+    return list;
+  }
+
+  @Override
+  public Mono<ReviewPage> getReviewPage(int productId, int limit, Integer cursor) {
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+    if (limit < 1 || limit > this.maxPageSize) {
+      throw new InvalidInputException("Invalid limit: " + limit + ", must be between 1 and " + this.maxPageSize);
+    }
+
+    LOG.info("Will get {} reviews for product with id={}, after reviewId={}", limit, productId, cursor);
+
+    return query(() -> List.of(internalGetReviewPage(productId, limit, cursor))).next();
+  }
+
+  private ReviewPage internalGetReviewPage(int productId, int limit, Integer cursor) {
+
+    // One more than the limit is read to find out if there is a next page
+    List<ReviewEntity> entityList = this.repository.findByProductIdAndReviewIdGreaterThanOrderByReviewId(
+        productId, (cursor == null) ? Integer.MIN_VALUE : cursor, PageRequest.of(0, limit + 1));
+    long totalCount = this.repository.countByProductId(productId);
+
+    List<Review> list = this.mapper.entityListToApiList(entityList.subList(0, Math.min(limit, entityList.size())));
+    list.forEach(review -> review.setServiceAddress(this.serviceUtil.getServiceAddress()));
+    Integer nextCursor = (entityList.size() > limit) ? list.get(limit - 1).getReviewId() : null;
+
+    LOG.debug("Response size: {} of {}", list.size(), totalCount);
+
+    return new ReviewPage(list, totalCount, nextCursor);
+  }
+
+  @Override
+  public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      throw new InvalidInputException("No productIds specified");
+    }
+    if (productIds.size() > this.maxBatchSize) {
+      throw new InvalidInputException("Too many productIds: " + productIds.size() + ", max is: " + this.maxBatchSize);
+    }
+    productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    LOG.info("Will get reviews for {} products", productIds.size());
+
+    return query(() -> internalGetReviewsForProducts(productIds));
+  }
+
+  private List<Review> internalGetReviewsForProducts(List<Integer> productIds) {
+
+    List<ReviewEntity> entityList = this.repository.findByProductIdIn(productIds);
     List<Review> list = this.mapper.entityListToApiList(entityList);
     list.forEach(review -> review.setServiceAddress(this.serviceUtil.getServiceAddress()));
 
@@ -93,6 +256,33 @@ public class ReviewServiceImpl implements ReviewService {
     return list;
   }
 
+  /**
+   * Runs a query on the JDBC scheduler, bounded by the deadline of the request if there is one. A query that gets
+   * a thread after the deadline has passed is not run, otherwise the time left is set as the query timeout.
+   */
+  private <T> Flux<T> query(Supplier<List<T>> query) {
+    return Mono.deferContextual(context -> Mono.fromCallable(() -> {
+          Optional<Deadline> deadline = Deadline.from(context);
+          return deadline.isPresent() ? queryWithin(deadline.get(), query) : query.get();
+        }))
+        .flatMapMany(Flux::fromIterable)
+        .log(LOG.getName(), Level.FINE)
+        .subscribeOn(this.jdbcScheduler);
+  }
+
+  private <T> List<T> queryWithin(Deadline deadline, Supplier<List<T>> query) {
+    if (deadline.isExpired()) {
+      throw new QueryTimeoutException("Deadline passed before the query was run");
+    }
+
+    // JPA applies the time left of the transaction as the timeout of its queries, JDBC counts it in whole seconds
+    TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+    transaction.setReadOnly(true);
+    transaction.setTimeout((int) Math.max(1, (deadline.remaining().toMillis() + 999) / 1000));
+
+    return transaction.execute(status -> query.get());
+  }
+
   @Override
   public Mono<Void> deleteReviews(int productId) {
     if (productId < 1) {
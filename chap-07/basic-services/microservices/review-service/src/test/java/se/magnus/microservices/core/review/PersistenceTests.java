@@ -7,12 +7,15 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import se.magnus.microservices.core.review.persistence.ReviewEntity;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.microservices.core.review.persistence.ReviewVersion;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -50,6 +53,14 @@ public class PersistenceTests extends MySqlTestBase {
 
   }
 
+  @Test
+  void createBatch() {
+    repository.saveAll(List.of(new ReviewEntity(2, 1, "a", "s", "c"), new ReviewEntity(2, 2, "a", "s", "c")));
+
+    assertEquals(2, repository.findByProductId(2).size());
+    assertEquals(3, repository.count());
+  }
+
   @Test
   void update() {
     savedEntity.setAuthor("a2");
@@ -74,6 +85,40 @@ public class PersistenceTests extends MySqlTestBase {
     assertEqualsReview(savedEntity, entityList.get(0));
   }
 
+  @Test
+  void getVersionsByProductId() {
+    List<ReviewVersion> versionList = repository.findVersionsByProductIdOrderById(savedEntity.getProductId());
+
+    assertThat(versionList, hasSize(1));
+    assertEquals(savedEntity.getId(), versionList.get(0).getId());
+    assertEquals(savedEntity.getVersion(), versionList.get(0).getVersion());
+  }
+
+  @Test
+  void getByProductIds() {
+    repository.save(new ReviewEntity(2, 1, "a", "s", "c"));
+    repository.save(new ReviewEntity(3, 1, "a", "s", "c"));
+
+    List<ReviewEntity> entityList = repository.findByProductIdIn(List.of(1, 2));
+
+    assertThat(entityList, hasSize(2));
+  }
+
+  @Test
+  void getPageByProductId() {
+    repository.save(new ReviewEntity(1, 5, "a", "s", "c"));
+    repository.save(new ReviewEntity(1, 3, "a", "s", "c"));
+    repository.save(new ReviewEntity(2, 4, "a", "s", "c"));
+
+    List<ReviewEntity> firstPage = repository.findByProductIdAndReviewIdGreaterThanOrderByReviewId(1, Integer.MIN_VALUE, PageRequest.of(0, 2));
+    assertEquals(List.of(2, 3), firstPage.stream().map(ReviewEntity::getReviewId).collect(Collectors.toList()));
+
+    List<ReviewEntity> nextPage = repository.findByProductIdAndReviewIdGreaterThanOrderByReviewId(1, 3, PageRequest.of(0, 2));
+    assertEquals(List.of(5), nextPage.stream().map(ReviewEntity::getReviewId).collect(Collectors.toList()));
+
+    assertEquals(3, repository.countByProductId(1));
+  }
+
   @Test
   void duplicateError() {
     assertThrows(DataIntegrityViolationException.class, () -> {
@@ -5,17 +5,27 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.event.Event;
-import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
 
-import java.util.function.Consumer;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
@@ -25,6 +35,7 @@ import static se.magnus.api.event.Event.Type.DELETE;
 @SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
     "spring.cloud.stream.defaultBinder=rabbit",
     "logging.level.se.magnus=DEBUG"})
+@Import({TestChannelBinderConfiguration.class})
 class ReviewServiceApplicationTests extends MySqlTestBase {
 
   @Autowired
@@ -35,7 +46,10 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 
   @Autowired
   @Qualifier("messageProcessor")
-  private Consumer<Event<Integer, Review>> messageProcessor;
+  private Function<Flux<Message<Event<Integer, Review>>>, Mono<Void>> messageProcessor;
+
+  @Autowired
+  private OutputDestination target;
 
   @BeforeEach
   void setupDb() {
@@ -73,15 +87,29 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 
     assertEquals(1, repository.count());
 
-    InvalidInputException thrown = assertThrows(
-        InvalidInputException.class,
-        () -> sendCreateReviewEvent(productId, reviewId),
-        "Expected a InvalidInputException here!");
-    assertEquals("Duplicate key, Product Id: 1, Review Id:1", thrown.getMessage());
+    // Failed events are retried and then sent to the dead letter queue
+    sendCreateReviewEvent(productId, reviewId);
+    Message<byte[]> deadLetter = this.target.receive(5000, "DLX");
+    assertNotNull(deadLetter);
+    assertEquals("Duplicate key, Product Id: 1, Review Id:1", deadLetter.getHeaders().get("x-exception-message"));
 
     assertEquals(1, repository.count());
   }
 
+  @Test
+  void createBatchAgainSkipsExistingReviews() {
+
+    int productId = 1;
+
+    // The first review of the batch already exists, the batch is then delivered twice
+    sendCreateReviewEvent(productId, 1);
+    sendCreateReviewsEvent(productId, 1, 2, 3);
+    sendCreateReviewsEvent(productId, 1, 2, 3);
+
+    assertNull(this.target.receive(1000, "DLX"));
+    assertEquals(3, repository.findByProductId(productId).size());
+  }
+
   @Test
   void deleteReviews() {
 
@@ -147,11 +175,19 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
   private void sendCreateReviewEvent(int productId, int reviewId) {
     Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
     Event<Integer, Review> event = new Event(CREATE, productId, review);
-    messageProcessor.accept(event);
+    this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+  }
+
+  private void sendCreateReviewsEvent(int productId, int... reviewIds) {
+    List<Review> reviews = IntStream.of(reviewIds)
+        .mapToObj(reviewId -> new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA"))
+        .collect(Collectors.toList());
+    Event<Integer, Review> event = Event.batch(productId, reviews);
+    this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
   }
 
   private void sendDeleteReviewEvent(int productId) {
     Event<Integer, Review> event = new Event(DELETE, productId, null);
-    messageProcessor.accept(event);
+    this.messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
   }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package se.magnus.util.http;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ETags for GET responses, and 304 Not Modified for requests whose If-None-Match matches them.
+ *
+ * Relies on ConditionalGetWebFilter to find the exchange of the request in the Reactor context, outside of a
+ * request the body is returned as is.
+ */
+public final class ConditionalGet {
+
+  public static final String CONTEXT_KEY = ConditionalGet.class.getName() + ".exchange";
+
+  private ConditionalGet() {
+  }
+
+  /**
+   * A weak ETag derived from the given parts, typically ids and versions of entities. Weak since equal versions
+   * still are served with different service addresses and encodings.
+   */
+  public static String eTag(Stream<?> parts) {
+    String joined = parts.map(String::valueOf).collect(Collectors.joining(","));
+    return "W/\"" + DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8)) + "\"";
+  }
+
+  public static String eTag(Object... parts) {
+    return eTag(Stream.of(parts));
+  }
+
+  /**
+   * Sets the ETag of the response, and returns no body but 304 Not Modified if the request already has it. A null
+   * ETag leaves the response as it is.
+   */
+  public static <T> Mono<T> withETag(String eTag, Mono<T> body) {
+    return Mono.deferContextual(context -> isNotModified(context.getOrEmpty(CONTEXT_KEY), eTag) ? Mono.empty() : body);
+  }
+
+  public static <T> Flux<T> withETag(String eTag, Flux<T> body) {
+    return Flux.deferContextual(context -> isNotModified(context.getOrEmpty(CONTEXT_KEY), eTag) ? Flux.empty() : body);
+  }
+
+  private static boolean isNotModified(Optional<ServerWebExchange> exchange, String eTag) {
+    return eTag != null && exchange.map(e -> e.checkNotModified(eTag)).orElse(false);
+  }
+}
@@ -0,0 +1,49 @@
+package se.magnus.util.http;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Puts the exchange in the Reactor context for ConditionalGet, and drops the body of responses that it turned into
+ * 304 Not Modified.
+ *
+ * Handlers only learn the ETag, and with it the status, once the body is subscribed to by the response. An empty
+ * list still is encoded as "[]", which a 304 must not have.
+ */
+@Component
+public class ConditionalGetWebFilter implements WebFilter {
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+      @Override
+      public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        // The status is set when the handler's result is subscribed to, before any buffer is encoded from it
+        return (body instanceof Mono)
+            ? getDelegate().writeWith(Mono.from(body).filter(this::isToBeWritten))
+            : getDelegate().writeWith(Flux.from(body).filter(this::isToBeWritten));
+      }
+
+      private boolean isToBeWritten(DataBuffer buffer) {
+        if (getStatusCode() == HttpStatus.NOT_MODIFIED) {
+          DataBufferUtils.release(buffer);
+          return false;
+        }
+        return true;
+      }
+    };
+
+    ServerWebExchange decorated = exchange.mutate().response(response).build();
+    return chain.filter(decorated).contextWrite(Context.of(ConditionalGet.CONTEXT_KEY, decorated));
+  }
+}
@@ -0,0 +1,50 @@
+package se.magnus.util.http;
+
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The point in time when the caller of a request stops waiting for it.
+ *
+ * Kept in the Reactor context of the request and forwarded to other services as the time remaining, in
+ * milliseconds, in the X-Request-Timeout header. A relative value is used so that the clocks of the services
+ * do not have to be in sync.
+ */
+public final class Deadline {
+
+  public static final String HEADER = "X-Request-Timeout";
+
+  public static final String CONTEXT_KEY = Deadline.class.getName();
+
+  private final long expiresAtNanos;
+
+  private Deadline(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  public static Deadline after(Duration timeout) {
+    return new Deadline(System.nanoTime() + timeout.toNanos());
+  }
+
+  public static Optional<Deadline> from(ContextView context) {
+    return context.getOrEmpty(CONTEXT_KEY);
+  }
+
+  /**
+   * Time left until the deadline, zero once it has passed.
+   */
+  public Duration remaining() {
+    return Duration.ofNanos(Math.max(0, this.expiresAtNanos - System.nanoTime()));
+  }
+
+  public boolean isExpired() {
+    return this.expiresAtNanos - System.nanoTime() <= 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline in " + remaining().toMillis() + " ms";
+  }
+}
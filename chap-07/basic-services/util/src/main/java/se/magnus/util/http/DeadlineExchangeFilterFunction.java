@@ -0,0 +1,42 @@
+package se.magnus.util.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Forwards the deadline of the current request to the called service in the X-Request-Timeout header, calls
+ * made after the deadline has passed fail at once with a TimeoutException.
+ *
+ * Pairs with the DeadlineWebFilter of the called service, which bounds its own handling and database queries by
+ * the same deadline.
+ */
+@Component
+public class DeadlineExchangeFilterFunction implements ExchangeFilterFunction {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeadlineExchangeFilterFunction.class);
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    return Mono.deferContextual(context -> Deadline.from(context)
+        .map(deadline -> {
+          if (deadline.isExpired()) {
+            LOG.debug("Deadline passed, does not call {}", request.url());
+            return Mono.<ClientResponse>error(new TimeoutException("Deadline passed before calling " + request.url()));
+          }
+
+          ClientRequest withDeadline = ClientRequest.from(request)
+              .header(Deadline.HEADER, String.valueOf(deadline.remaining().toMillis()))
+              .build();
+          return next.exchange(withDeadline);
+        })
+        .orElseGet(() -> next.exchange(request)));
+  }
+}
@@ -0,0 +1,87 @@
+package se.magnus.util.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Bounds the handling of a request by its deadline, taken from the X-Request-Timeout header or, if the header is
+ * missing, from app.deadline.default-timeout.
+ *
+ * The deadline is put in the Reactor context for the database queries and the outgoing calls of the request. When
+ * it passes, the handling is cancelled, which also cancels the outgoing calls, and 504 Gateway Timeout is returned.
+ * Streaming requests have no end to wait for and are left without a deadline.
+ */
+@Component
+public class DeadlineWebFilter implements WebFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeadlineWebFilter.class);
+
+  private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON);
+
+  private final Duration defaultTimeout;
+
+  @Autowired
+  public DeadlineWebFilter(@Value("${app.deadline.default-timeout:0s}") Duration defaultTimeout) {
+    LOG.info("Request deadlines, default timeout: {}", defaultTimeout.isZero() ? "none" : defaultTimeout);
+    this.defaultTimeout = defaultTimeout;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    Duration timeout = getTimeout(exchange);
+    if (timeout == null || isStreaming(exchange)) {
+      return chain.filter(exchange);
+    }
+
+    Deadline deadline = Deadline.after(timeout);
+    if (deadline.isExpired()) {
+      LOG.debug("Deadline already passed for {}, the request is not handled", exchange.getRequest().getPath());
+      return gatewayTimeout(exchange);
+    }
+
+    return chain.filter(exchange)
+        .timeout(deadline.remaining())
+        // Errors from queries and calls that were cut short by the deadline, e.g. a Mongo maxTimeMS or a JDBC
+        // query timeout, are reported as the timeout they are
+        .onErrorResume(ex -> deadline.isExpired() && !exchange.getResponse().isCommitted(), ex -> {
+          LOG.debug("Deadline passed for {}: {}", exchange.getRequest().getPath(), ex.toString());
+          return gatewayTimeout(exchange);
+        })
+        .contextWrite(Context.of(Deadline.CONTEXT_KEY, deadline));
+  }
+
+  private Duration getTimeout(ServerWebExchange exchange) {
+    String header = exchange.getRequest().getHeaders().getFirst(Deadline.HEADER);
+    if (header != null) {
+      try {
+        return Duration.ofMillis(Long.parseLong(header));
+      } catch (NumberFormatException ex) {
+        LOG.warn("Ignores invalid {} header: {}", Deadline.HEADER, header);
+      }
+    }
+    return this.defaultTimeout.isZero() ? null : this.defaultTimeout;
+  }
+
+  private boolean isStreaming(ServerWebExchange exchange) {
+    return exchange.getRequest().getHeaders().getAccept().stream()
+        .anyMatch(mediaType -> STREAMING_MEDIA_TYPES.stream().anyMatch(mediaType::equalsTypeAndSubtype));
+  }
+
+  private Mono<Void> gatewayTimeout(ServerWebExchange exchange) {
+    exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+    return exchange.getResponse().setComplete();
+  }
+}
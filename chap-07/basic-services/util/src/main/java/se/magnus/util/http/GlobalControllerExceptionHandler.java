@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
 
 @RestControllerAdvice
 public class GlobalControllerExceptionHandler {
@@ -28,6 +29,12 @@ public class GlobalControllerExceptionHandler {
     return createHttpErrorInfo(HttpStatus.UNPROCESSABLE_ENTITY, request, ex);
   }
 
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public @ResponseBody HttpErrorInfo handleServiceUnavailableException(ServerHttpRequest request, ServiceUnavailableException ex) {
+    return createHttpErrorInfo(HttpStatus.SERVICE_UNAVAILABLE, request, ex);
+  }
+
   private HttpErrorInfo createHttpErrorInfo(HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
 
     final String path = request.getPath().pathWithinApplication().value();
@@ -0,0 +1,29 @@
+package se.magnus.util.messaging;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
+
+/**
+ * Lets the manual acks of the {@link ReactiveMessageProcessor} be made out of order on Kafka. The container commits
+ * an offset once all records before it are acknowledged too.
+ */
+@Configuration
+@ConditionalOnClass(name = {
+  "org.springframework.kafka.listener.AbstractMessageListenerContainer",
+  "org.springframework.cloud.stream.config.ListenerContainerCustomizer"
+})
+public class KafkaAsyncAcksConfig {
+
+  @Bean
+  public ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> kafkaAsyncAcksCustomizer() {
+    return (container, destination, group) -> {
+      if (container.getContainerProperties().getAckMode() == AckMode.MANUAL) {
+        container.getContainerProperties().setAsyncAcks(true);
+      }
+    };
+  }
+}
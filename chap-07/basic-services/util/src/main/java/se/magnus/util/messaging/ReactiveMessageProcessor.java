@@ -0,0 +1,126 @@
+package se.magnus.util.messaging;
+
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Processes the messages of a reactive consumer concurrently, in order per partition key. Messages are spread over
+ * as many lanes as the concurrency by their partition key, each lane processes one message at a time.
+ *
+ * A message that fails is retried like the binder retries imperative consumers, with the maxAttempts and backOff
+ * settings of the binding, and is then dead-lettered. Every message is acknowledged once it is processed or
+ * dead-lettered, which needs the MANUAL acknowledge mode on RabbitMQ and ack mode on Kafka.
+ */
+public class ReactiveMessageProcessor<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReactiveMessageProcessor.class);
+
+  private final Function<T, Object> partitionKey;
+  private final Function<T, Mono<?>> handler;
+  private final BiConsumer<T, Throwable> deadLetterer;
+  private final int concurrency;
+  private final int maxAttempts;
+  private final Duration backOffInitialInterval;
+  private final Duration backOffMaxInterval;
+  private final double backOffMultiplier;
+
+  public ReactiveMessageProcessor(
+      Function<T, Object> partitionKey,
+      Function<T, Mono<?>> handler,
+      BiConsumer<T, Throwable> deadLetterer,
+      int concurrency,
+      int maxAttempts,
+      Duration backOffInitialInterval,
+      Duration backOffMaxInterval,
+      double backOffMultiplier) {
+
+    this.partitionKey = partitionKey;
+    this.handler = handler;
+    this.deadLetterer = deadLetterer;
+    this.concurrency = concurrency;
+    this.maxAttempts = maxAttempts;
+    this.backOffInitialInterval = backOffInitialInterval;
+    this.backOffMaxInterval = backOffMaxInterval;
+    this.backOffMultiplier = backOffMultiplier;
+  }
+
+  /**
+   * Sends the payload to the output binding, with the exception message in the same header as the binders use.
+   */
+  public static <T> BiConsumer<T, Throwable> deadLetterTo(StreamBridge streamBridge, String bindingName) {
+    return (payload, ex) -> {
+      if (!streamBridge.send(bindingName, MessageBuilder.withPayload(payload).setHeader("x-exception-message", ex.getMessage()).build())) {
+        throw new IllegalStateException("Failed to send a message to " + bindingName);
+      }
+    };
+  }
+
+  public Mono<Void> process(Flux<Message<T>> messages) {
+    // A fixed number of groups, so that flatMap never waits for a group it has no room for
+    return messages
+        .groupBy(message -> Math.floorMod(Objects.hashCode(this.partitionKey.apply(message.getPayload())), this.concurrency))
+        .flatMap(lane -> lane.concatMap(this::processMessage), this.concurrency)
+        .then();
+  }
+
+  private Mono<Void> processMessage(Message<T> message) {
+    T payload = message.getPayload();
+    return Mono.defer(() -> this.handler.apply(payload))
+        .retryWhen(Retry.from(signals -> signals.concatMap(signal -> signal.totalRetries() + 1 < this.maxAttempts
+            ? Mono.delay(backOff(signal.totalRetries()))
+            : Mono.error(signal.failure()))))
+        .then()
+        .onErrorResume(ex -> deadLetter(payload, ex))
+        .then(Mono.fromRunnable(() -> acknowledge(message)));
+  }
+
+  private Duration backOff(long retries) {
+    double millis = this.backOffInitialInterval.toMillis() * Math.pow(this.backOffMultiplier, retries);
+    return Duration.ofMillis((long) Math.min(millis, this.backOffMaxInterval.toMillis()));
+  }
+
+  /**
+   * Keeps trying while the dead letter queue is unavailable, the message is not acknowledged until it is there.
+   */
+  private Mono<Void> deadLetter(T payload, Throwable failure) {
+    LOG.warn("Sends the message to the dead letter queue after {} attempts: {}", this.maxAttempts, failure.toString());
+    return Mono.<Void>fromRunnable(() -> this.deadLetterer.accept(payload, failure))
+        .doOnError(ex -> LOG.warn("Failed to dead-letter a message, will retry: {}", ex.toString()))
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, this.backOffInitialInterval).maxBackoff(this.backOffMaxInterval));
+  }
+
+  private static void acknowledge(Message<?> message) {
+    Acknowledgment acknowledgment = message.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+    if (acknowledgment != null) {
+      acknowledgment.acknowledge();
+      return;
+    }
+
+    Channel channel = message.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+    Long deliveryTag = message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+    if (channel != null && deliveryTag != null) {
+      try {
+        channel.basicAck(deliveryTag, false);
+      } catch (IOException ex) {
+        // The message is delivered again
+        LOG.warn("Failed to acknowledge message {}: {}", deliveryTag, ex.toString());
+      }
+    }
+  }
+}
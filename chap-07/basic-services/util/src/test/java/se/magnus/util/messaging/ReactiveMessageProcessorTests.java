@@ -0,0 +1,109 @@
+package se.magnus.util.messaging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ReactiveMessageProcessorTests {
+
+  private static final Duration BACK_OFF = Duration.ofMillis(10);
+
+  @Test
+  void messagesWithTheSameKeyAreProcessedInOrder() {
+    Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    ReactiveMessageProcessor<int[]> processor = processor(value -> Mono.delay(Duration.ofMillis(5 - value[1] % 5))
+        .doOnSubscribe(subscription -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+        .doOnNext(tick -> {
+          processed.computeIfAbsent(value[0], key -> new CopyOnWriteArrayList<>()).add(value[1]);
+          running.decrementAndGet();
+        }), (value, ex) -> { }, 4);
+
+    Flux<Message<int[]>> messages = Flux.range(0, 40).map(index -> message(new int[]{index % 4, index}));
+    processor.process(messages).block(Duration.ofSeconds(5));
+
+    for (int key = 0; key < 4; key++) {
+      List<Integer> values = processed.get(key);
+      assertEquals(10, values.size());
+      for (int index = 1; index < values.size(); index++) {
+        assertTrue(values.get(index - 1) < values.get(index));
+      }
+    }
+    assertTrue(maxRunning.get() > 1);
+    assertTrue(maxRunning.get() <= 4);
+  }
+
+  @Test
+  void failedMessageIsRetriedThenDeadLetteredAndAcknowledged() {
+    AtomicInteger attempts = new AtomicInteger();
+    List<String> deadLetters = new CopyOnWriteArrayList<>();
+    Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+    ReactiveMessageProcessor<int[]> processor = processor(value -> {
+      attempts.incrementAndGet();
+      return Mono.error(new IllegalArgumentException("Invalid value: " + value[1]));
+    }, (value, ex) -> deadLetters.add(ex.getMessage()), 2);
+
+    Message<int[]> message = MessageBuilder.withPayload(new int[]{1, 13})
+        .setHeader(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment)
+        .build();
+    processor.process(Flux.just(message)).block(Duration.ofSeconds(5));
+
+    assertEquals(3, attempts.get());
+    assertEquals(List.of("Invalid value: 13"), deadLetters);
+    verify(acknowledgment, times(1)).acknowledge();
+  }
+
+  @Test
+  void deadLetteringIsRetriedUntilItSucceeds() {
+    AtomicInteger deadLetterAttempts = new AtomicInteger();
+    Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+    ReactiveMessageProcessor<int[]> processor = processor(value -> Mono.error(new IllegalStateException("Failed")),
+        (value, ex) -> {
+          if (deadLetterAttempts.incrementAndGet() < 3) {
+            throw new IllegalStateException("Broker is down");
+          }
+        }, 2);
+
+    Message<int[]> message = MessageBuilder.withPayload(new int[]{1, 1})
+        .setHeader(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment)
+        .build();
+    processor.process(Flux.just(message)).block(Duration.ofSeconds(5));
+
+    assertEquals(3, deadLetterAttempts.get());
+    verify(acknowledgment, times(1)).acknowledge();
+  }
+
+  private static ReactiveMessageProcessor<int[]> processor(
+      Function<int[], Mono<?>> handler, BiConsumer<int[], Throwable> deadLetterer, int concurrency) {
+
+    return new ReactiveMessageProcessor<>(value -> value[0], handler, deadLetterer, concurrency, 3,
+        BACK_OFF, BACK_OFF.multipliedBy(2), 2.0);
+  }
+
+  private static Message<int[]> message(int[] value) {
+    return MessageBuilder.withPayload(value).build();
+  }
+}